@@ -4,34 +4,139 @@ import java.awt.*;
 import java.awt.event.*;
 import java.util.*;
 import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 // Import our classes from src package
+import src.AdaptiveCodeModel;
 import src.HuffmanTree;
 import src.Node;
 
+// Draws an adaptive Huffman tree. Each updateTree copies the whole tree into flat arrays and
+// lays all of it out again on a background thread; a tree has at most 515 nodes (the
+// 257-symbol byte alphabet), so this is cheaper than tracking which subtree moved. Painting
+// draws just the part inside the viewport. Mouse wheel zooms around the cursor, dragging
+// pans, double-click fits the tree, and a fitted view refits when the panel is resized.
 public class HuffmanTreeVisualizer extends JPanel {
-    private HuffmanTree tree;
-    private Map<Node, Point> nodePositions;
+    private static final BasicStroke EDGE_STROKE = new BasicStroke(2.0f);
+    private static final double MIN_SCALE = 0.02;
+    private static final double MAX_SCALE = 4.0;
+    // Below this node size in pixels, text is unreadable and is not drawn
+    private static final double MIN_TEXT_PIXELS = 24;
+
+    private AdaptiveCodeModel tree;
     private Set<Node> highlightedNodes;
     private int nodeSize = 50;
     private int horizontalGap = 80;
     private int verticalGap = 80;
     private int fontHeight = 14;
-    
 
-    public HuffmanTreeVisualizer(HuffmanTree tree) {
-        this.tree = tree;
-        this.nodePositions = new HashMap<>();
+    // One layout at a time off the EDT; a request superseded before it starts is skipped
+    private final ExecutorService layoutThread = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "tree-layout");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong layoutVersion = new AtomicLong();
+    private Layout layout;
+
+    // View transform: screen = world * scale + offset
+    private double scale = 1.0;
+    private double offsetX;
+    private double offsetY;
+    // Keep fitting the whole tree until the user zooms or pans
+    private boolean autoFit = true;
+    private Point dragFrom;
+
+    public HuffmanTreeVisualizer(AdaptiveCodeModel tree) {
         this.highlightedNodes = new HashSet<>();
-        
+
         setPreferredSize(new Dimension(1000, 600));
         setBackground(Color.WHITE);
+
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragFrom = e.getPoint();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (dragFrom != null) {
+                    offsetX += e.getX() - dragFrom.x;
+                    offsetY += e.getY() - dragFrom.y;
+                    dragFrom = e.getPoint();
+                    autoFit = false;
+                    repaint();
+                }
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                dragFrom = null;
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    fitToView();
+                }
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                zoom(Math.pow(1.1, -e.getPreciseWheelRotation()), e.getX(), e.getY());
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                if (autoFit && layout != null) {
+                    fit(layout);
+                    repaint();
+                }
+            }
+        });
+
+        updateTree(tree);
     }
-    
-    public void updateTree(HuffmanTree tree) {
+
+    // Lays out the tree again; call after every change to it. Must run on the EDT.
+    public void updateTree(AdaptiveCodeModel tree) {
+        if (tree != this.tree) {
+            autoFit = true;
+        }
         this.tree = tree;
-        repaint();
+        if (tree == null || tree.getRoot() == null) {
+            layoutVersion.incrementAndGet();
+            layout = null;
+            repaint();
+            return;
+        }
+        // Reading the tree has to happen here, since the EDT is what mutates it
+        Snapshot snapshot = new Snapshot(tree.getRoot(), tree.getNYTNode());
+        long version = layoutVersion.incrementAndGet();
+        layoutThread.execute(() -> {
+            if (layoutVersion.get() != version) {
+                return;
+            }
+            Layout result = new Layout(snapshot, horizontalGap, verticalGap);
+            SwingUtilities.invokeLater(() -> {
+                if (layoutVersion.get() == version) {
+                    layout = result;
+                    if (autoFit) {
+                        fit(result);
+                    }
+                    repaint();
+                }
+            });
+        });
     }
+
     // Update the tree and highlight the specified node
     public void highlightNode(Node node) {
         highlightedNodes.clear();
@@ -40,7 +145,7 @@ public class HuffmanTreeVisualizer extends JPanel {
         }
         repaint();
     }
-    
+
     // Update the tree and highlight two nodes
     // This method is used to highlight the NYT node and the newly added node
     public void highlightNodes(Node node1, Node node2) {
@@ -49,170 +154,318 @@ public class HuffmanTreeVisualizer extends JPanel {
         if (node2 != null) highlightedNodes.add(node2);
         repaint();
     }
-    
-    // Update the tree and clear highlighted nodes
+
+    // Scales and centers the view so the whole tree is visible
+    public void fitToView() {
+        autoFit = true;
+        if (layout != null) {
+            fit(layout);
+        }
+        repaint();
+    }
+
+    private void fit(Layout current) {
+        if (getWidth() <= 0 || getHeight() <= 0) {
+            return; // not on screen yet; componentResized fits once it is
+        }
+        double worldWidth = current.width + 2 * nodeSize;
+        double worldHeight = current.height + 2 * nodeSize;
+        scale = clampScale(Math.min(1.0, Math.min(getWidth() / worldWidth, getHeight() / worldHeight)));
+        offsetX = (getWidth() - current.width * scale) / 2;
+        offsetY = nodeSize * scale;
+    }
+
+    // Zooms by factor, keeping the world point under (x, y) in place
+    private void zoom(double factor, int x, int y) {
+        double newScale = clampScale(scale * factor);
+        offsetX = x - (x - offsetX) * newScale / scale;
+        offsetY = y - (y - offsetY) * newScale / scale;
+        scale = newScale;
+        autoFit = false;
+        repaint();
+    }
+
+    private static double clampScale(double value) {
+        return Math.max(MIN_SCALE, Math.min(MAX_SCALE, value));
+    }
+
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
-        
-        if (tree == null || tree.getRoot() == null) {
+
+        Layout current = layout;
+        if (current == null) {
             return;
         }
-        
-        Graphics2D g2d = (Graphics2D) g;
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        
-        // Calculate positions
-        nodePositions.clear();
-        calculateNodePositions(tree.getRoot(), getWidth() / 2, 50, getWidth() / 4);
-        
-        // Draw edges
-        drawEdges(g2d, tree.getRoot());
-        
-        // Draw nodes
-        drawNodes(g2d);
-    }
-    
-    private void calculateNodePositions(Node node, int x, int y, int offset) {
-        if (node == null) return;
-        
-        nodePositions.put(node, new Point(x, y));
-        
-        // Calculate positions for children with updated horizontal offset
-        int nextOffset = Math.max(horizontalGap, offset / 2);
-        
-        if (node.getLeftChild() != null) {
-            calculateNodePositions(node.getLeftChild(), x - offset, y + verticalGap, nextOffset);
-        }
-        
-        if (node.getRightChild() != null) {
-            calculateNodePositions(node.getRightChild(), x + offset, y + verticalGap, nextOffset);
+
+        Graphics2D g2d = (Graphics2D) g.create();
+        try {
+            boolean detailed = nodeSize * scale >= MIN_TEXT_PIXELS;
+            if (detailed) {
+                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            }
+            g2d.translate(offsetX, offsetY);
+            g2d.scale(scale, scale);
+
+            // The viewport in tree coordinates, widened so half-visible nodes still get drawn
+            Rectangle clip = g2d.getClipBounds();
+            if (clip == null) {
+                clip = new Rectangle((int) (-offsetX / scale), (int) (-offsetY / scale),
+                        (int) (getWidth() / scale) + 1, (int) (getHeight() / scale) + 1);
+            }
+            double minX = clip.getMinX() - nodeSize;
+            double maxX = clip.getMaxX() + nodeSize;
+            double minY = clip.getMinY() - nodeSize;
+            double maxY = clip.getMaxY() + nodeSize;
+
+            drawEdges(g2d, current, minX, maxX, minY, maxY, detailed);
+            drawNodes(g2d, current, minX, maxX, minY, maxY, detailed);
+        } finally {
+            g2d.dispose();
         }
     }
-    
-    private void drawEdges(Graphics2D g, Node node) {
-        if (node == null) return;
-        
-        Point nodePoint = nodePositions.get(node);
-        
-        if (nodePoint == null) return;
-        
-        if (node.getLeftChild() != null) {
-            Point leftPoint = nodePositions.get(node.getLeftChild());
-            if (leftPoint != null) {
-                g.setColor(Color.BLACK);
-                g.setStroke(new BasicStroke(2.0f));
-                g.drawLine(nodePoint.x, nodePoint.y, leftPoint.x, leftPoint.y);
-                
-                // Draw edge label
-                int midX = (nodePoint.x + leftPoint.x) / 2;
-                int midY = (nodePoint.y + leftPoint.y) / 2;
-                g.drawString("0", midX - 5, midY - 5);
-                
-                drawEdges(g, node.getLeftChild());
+
+    private void drawEdges(Graphics2D g, Layout current, double minX, double maxX, double minY, double maxY,
+                           boolean detailed) {
+        Snapshot tree = current.snapshot;
+        g.setColor(Color.BLACK);
+        g.setStroke(EDGE_STROKE);
+        for (int i = 0; i < tree.count; i++) {
+            double y = current.y[i];
+            // Both children sit one level down, so the edges' box is easy to reject
+            if (tree.left[i] < 0 || y > maxY || y + verticalGap < minY) {
+                continue;
             }
+            drawEdge(g, current, i, tree.left[i], "0", -5, minX, maxX, detailed);
+            drawEdge(g, current, i, tree.right[i], "1", 5, minX, maxX, detailed);
         }
-        
-        if (node.getRightChild() != null) {
-            Point rightPoint = nodePositions.get(node.getRightChild());
-            if (rightPoint != null) {
-                g.setColor(Color.BLACK);
-                g.setStroke(new BasicStroke(2.0f));
-                g.drawLine(nodePoint.x, nodePoint.y, rightPoint.x, rightPoint.y);
-                
-                // Draw edge label
-                int midX = (nodePoint.x + rightPoint.x) / 2;
-                int midY = (nodePoint.y + rightPoint.y) / 2;
-                g.drawString("1", midX + 5, midY - 5);
-                
-                drawEdges(g, node.getRightChild());
-            }
+    }
+
+    private void drawEdge(Graphics2D g, Layout current, int parent, int child, String label, int labelShift,
+                          double minX, double maxX, boolean detailed) {
+        double x1 = current.x[parent];
+        double x2 = current.x[child];
+        if (Math.max(x1, x2) < minX || Math.min(x1, x2) > maxX) {
+            return;
+        }
+        int px = (int) x1;
+        int py = (int) current.y[parent];
+        int cx = (int) x2;
+        int cy = (int) current.y[child];
+        g.drawLine(px, py, cx, cy);
+
+        // Draw edge label
+        if (detailed) {
+            g.drawString(label, (px + cx) / 2 + labelShift, (py + cy) / 2 - 5);
         }
     }
-    
-    private void drawNodes(Graphics2D g) {
-        for (Map.Entry<Node, Point> entry : nodePositions.entrySet()) {
-            Node node = entry.getKey();
-            Point point = entry.getValue();
-            
+
+    private void drawNodes(Graphics2D g, Layout current, double minX, double maxX, double minY, double maxY,
+                           boolean detailed) {
+        Snapshot tree = current.snapshot;
+        FontMetrics fm = g.getFontMetrics();
+        // x grows along the in-order, so the visible nodes are one contiguous run
+        for (int i = current.firstAtOrAfter(minX); i < tree.count && current.x[i] <= maxX; i++) {
+            double y = current.y[i];
+            if (y < minY || y > maxY) {
+                continue;
+            }
+            int x = (int) current.x[i];
+            int top = (int) y;
+
             // Determine node colors
+            Node node = tree.nodes[i];
             if (highlightedNodes.contains(node)) {
                 g.setColor(Color.RED);
-            } else if (node.isNYT()) {
+            } else if (tree.nyt[i]) {
                 g.setColor(Color.BLUE);
-            } else if (node.isLeaf()) {
+            } else if (tree.left[i] < 0) {
                 g.setColor(Color.GREEN);
             } else {
                 g.setColor(Color.LIGHT_GRAY);
             }
-            
+
             // Draw node circle
-            g.fillOval(point.x - nodeSize/2, point.y - nodeSize/2, nodeSize, nodeSize);
+            g.fillOval(x - nodeSize/2, top - nodeSize/2, nodeSize, nodeSize);
+            if (!detailed) {
+                continue;
+            }
             g.setColor(Color.BLACK);
-            g.drawOval(point.x - nodeSize/2, point.y - nodeSize/2, nodeSize, nodeSize);
-            
-            // Draw node information
-            String nodeText;
-            if (node.isNYT()) {
-                nodeText = "NYT";
-            } else if (node.isLeaf()) {
-                nodeText = "'" + node.getSymbol() + "'";
-            } else {
-                nodeText = "*";
+            g.drawOval(x - nodeSize/2, top - nodeSize/2, nodeSize, nodeSize);
+
+            // Node text, weight and ID, centered
+            String nodeText = current.text[i];
+            String weightText = "W:" + tree.weight[i];
+            String idText = "#" + tree.number[i];
+            g.drawString(nodeText, x - fm.stringWidth(nodeText)/2, top);
+            g.drawString(weightText, x - fm.stringWidth(weightText)/2, top + fontHeight);
+            g.drawString(idText, x - fm.stringWidth(idText)/2, top - fontHeight);
+        }
+    }
+
+    // What the layout and painting need from the tree, in in-order, copied on the EDT so the
+    // layout thread never touches live nodes
+    static final class Snapshot {
+        final int count;
+        final Node[] nodes;
+        final int[] left;
+        final int[] right;
+        final int[] depth;
+        final int[] weight;
+        final int[] number;
+        final char[] symbol;
+        final boolean[] nyt;
+
+        Snapshot(Node root, Node nytNode) {
+            // Node numbers are consecutive, from NYT's (the lowest, and negative once a 257-
+            // symbol alphabet is full) up to the root's, so counting down from the root maps
+            // nodes to in-order positions without boxing
+            int rootNumber = root.getNodeNumber();
+            int capacity = rootNumber - nytNode.getNodeNumber() + 1;
+            Node[] order = new Node[capacity];
+            int[] depths = new int[capacity];
+            int[] indexByNumber = new int[capacity];
+            Node[] stack = new Node[capacity];
+            int[] stackDepth = new int[capacity];
+            int top = 0;
+            int visited = 0;
+            Node node = root;
+            int level = 0;
+            while (node != null || top > 0) {
+                while (node != null) {
+                    stack[top] = node;
+                    stackDepth[top++] = level++;
+                    node = node.getLeftChild();
+                }
+                node = stack[--top];
+                level = stackDepth[top];
+                indexByNumber[rootNumber - node.getNodeNumber()] = visited;
+                order[visited] = node;
+                depths[visited++] = level;
+                node = node.getRightChild();
+                level++;
+            }
+
+            count = visited;
+            nodes = Arrays.copyOf(order, count);
+            left = new int[count];
+            right = new int[count];
+            depth = Arrays.copyOf(depths, count);
+            weight = new int[count];
+            number = new int[count];
+            symbol = new char[count];
+            nyt = new boolean[count];
+            for (int i = 0; i < count; i++) {
+                Node n = nodes[i];
+                left[i] = n.getLeftChild() == null ? -1 : indexByNumber[rootNumber - n.getLeftChild().getNodeNumber()];
+                right[i] = n.getRightChild() == null ? -1 : indexByNumber[rootNumber - n.getRightChild().getNodeNumber()];
+                weight[i] = n.getWeight();
+                number[i] = n.getNodeNumber();
+                symbol[i] = n.getSymbol();
+                nyt[i] = n.isNYT();
             }
-            
-            // Node ID and weight
-            String weightText = "W:" + node.getWeight();
-            String idText = "#" + node.getNodeNumber();
-            
-            // Center text
-            FontMetrics fm = g.getFontMetrics();
-            int textWidth = fm.stringWidth(nodeText);
-            int weightWidth = fm.stringWidth(weightText);
-            int idWidth = fm.stringWidth(idText);
-            
-            g.drawString(nodeText, point.x - textWidth/2, point.y);
-            g.drawString(weightText, point.x - weightWidth/2, point.y + fontHeight);
-            g.drawString(idText, point.x - idWidth/2, point.y - fontHeight);
         }
     }
-    
+
+    // Node centers for one snapshot. Leaves take consecutive slots left to right and each
+    // internal node sits halfway between the last leaf of its left subtree and the first of
+    // its right one, so nothing overlaps and x increases along the in-order.
+    static final class Layout {
+        final Snapshot snapshot;
+        final double[] x;
+        final double[] y;
+        final String[] text;
+        final double width;
+        final double height;
+
+        Layout(Snapshot snapshot, int horizontalGap, int verticalGap) {
+            this.snapshot = snapshot;
+            int count = snapshot.count;
+            x = new double[count];
+            y = new double[count];
+            text = new String[count];
+            int leaves = 0;
+            int maxDepth = 0;
+            for (int i = 0; i < count; i++) {
+                if (snapshot.left[i] < 0) {
+                    x[i] = leaves++ * (double) horizontalGap;
+                } else {
+                    x[i] = (leaves - 0.5) * horizontalGap;
+                }
+                y[i] = snapshot.depth[i] * (double) verticalGap;
+                maxDepth = Math.max(maxDepth, snapshot.depth[i]);
+                text[i] = nodeText(snapshot, i);
+            }
+            width = Math.max(0, leaves - 1) * (double) horizontalGap;
+            height = maxDepth * (double) verticalGap;
+        }
+
+        private static String nodeText(Snapshot snapshot, int i) {
+            if (snapshot.nyt[i]) {
+                return "NYT";
+            } else if (snapshot.left[i] < 0) {
+                char c = snapshot.symbol[i];
+                return c >= ' ' && c <= '~' ? "'" + c + "'" : String.format("0x%02X", (int) c);
+            }
+            return "*";
+        }
+
+        // Index of the first node with x >= value, or count if there is none
+        int firstAtOrAfter(double value) {
+            int low = 0;
+            int high = x.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (x[mid] < value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
     public static void main(String[] args) {
         // Create a swing application to display the tree
         SwingUtilities.invokeLater(() -> {
             JFrame frame = new JFrame("Adaptive Huffman Tree Visualizer");
             frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
             frame.setSize(1200, 800);
-            
+
             // Create a state container that will be used across lambda expressions
             class EncoderState {
                 HuffmanTree tree = new HuffmanTree();
                 Queue<Character> charQueue = new LinkedList<>();
             }
-            
+
             final EncoderState state = new EncoderState();
-            
+
             // Create components
             final HuffmanTreeVisualizer visualizer = new HuffmanTreeVisualizer(state.tree);
-            
+
             // Control panel
             JPanel controlPanel = new JPanel();
             JTextField inputField = new JTextField(20);
             JButton encodeButton = new JButton("Encode");
             JButton stepButton = new JButton("Step");
+            JButton allBytesButton = new JButton("All 256 bytes");
+            JButton fitButton = new JButton("Fit");
             JLabel statusLabel = new JLabel("Enter text to encode");
-            
+
             controlPanel.add(new JLabel("Input:"));
             controlPanel.add(inputField);
             controlPanel.add(encodeButton);
             controlPanel.add(stepButton);
-            
+            controlPanel.add(allBytesButton);
+            controlPanel.add(fitButton);
+
             // Layout
             frame.setLayout(new BorderLayout());
-            frame.add(new JScrollPane(visualizer), BorderLayout.CENTER);
+            frame.add(visualizer, BorderLayout.CENTER);
             frame.add(controlPanel, BorderLayout.NORTH);
             frame.add(statusLabel, BorderLayout.SOUTH);
-            
+
             // Encode button logic
             encodeButton.addActionListener(e -> {
                 String input = inputField.getText();
@@ -220,22 +473,22 @@ public class HuffmanTreeVisualizer extends JPanel {
                     statusLabel.setText("Please enter some text!");
                     return;
                 }
-                
+
                 // Reset and prepare for stepping
                 state.tree = new HuffmanTree();
                 visualizer.updateTree(state.tree);
-                
+
                 state.charQueue.clear();
                 for (char c : input.toCharArray()) {
                     state.charQueue.add(c);
                 }
-                
+
                 statusLabel.setText("Ready to encode: " + input);
                 inputField.setEnabled(false);
                 encodeButton.setEnabled(false);
                 stepButton.setEnabled(true);
             });
-            
+
             // Step button logic
             stepButton.addActionListener(e -> {
                 if (state.charQueue.isEmpty()) {
@@ -245,31 +498,53 @@ public class HuffmanTreeVisualizer extends JPanel {
                     stepButton.setEnabled(false);
                     return;
                 }
-                
+
                 char nextChar = state.charQueue.poll();
                 String code = state.tree.encode(nextChar);
-                
+
                 // Get node for highlighting before update
                 Node nodeBeforeUpdate = state.tree.getNodeForSymbol(nextChar);
-                
+
                 // Update tree
                 state.tree.update(nextChar);
-                
+
                 // Get node after update for highlighting
                 Node nodeAfterUpdate = state.tree.getNodeForSymbol(nextChar);
-                
+
                 visualizer.highlightNodes(nodeBeforeUpdate, nodeAfterUpdate);
                 visualizer.updateTree(state.tree);
-                
+
                 statusLabel.setText("Encoded '" + nextChar + "' as: " + code + " | Remaining: " + state.charQueue.size());
             });
-            
+
+            // Full byte alphabet with skewed counts: a 513-node tree to zoom and pan around
+            allBytesButton.addActionListener(e -> {
+                state.tree = new HuffmanTree();
+                state.charQueue.clear();
+                Random random = new Random();
+                for (int symbol = 0; symbol < 256; symbol++) {
+                    state.tree.update((char) symbol);
+                }
+                for (int i = 0; i < 20000; i++) {
+                    state.tree.update((char) Math.min(255, (int) (-Math.log(1 - random.nextDouble()) * 40)));
+                }
+                visualizer.highlightNode(null);
+                visualizer.updateTree(state.tree);
+
+                statusLabel.setText("All 256 byte values added; wheel zooms, drag pans, double-click fits");
+                inputField.setEnabled(true);
+                encodeButton.setEnabled(true);
+                stepButton.setEnabled(false);
+            });
+
+            fitButton.addActionListener(e -> visualizer.fitToView());
+
             // Initial state
             stepButton.setEnabled(false);
-            
+
             // Pre-load with default text
             inputField.setText("aacbdad");
-            
+
             frame.setVisible(true);
         });
     }
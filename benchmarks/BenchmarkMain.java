@@ -0,0 +1,41 @@
+package benchmarks;
+
+import java.util.Collection;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+//Entry point of benchmarks.jar: runs JMH with the GC profiler and prints a summary in the
+//units we track per change. Any JMH command-line option (e.g. a benchmark regex) is passed on.
+public final class BenchmarkMain {
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        System.out.println();
+        System.out.printf("%-40s %10s %12s %14s%n", "Benchmark", "MB/s", "ns/symbol", "alloc B/symbol");
+        for (RunResult run : results) {
+            String name = run.getParams().getBenchmark().replaceFirst(".*\\.", "")
+                    + " [" + run.getParams().getParam("corpus")
+                    + (run.getParams().getParam("algorithm") == null ? "" : ", " + run.getParams().getParam("algorithm"))
+                    + (run.getParams().getParam("lanes") == null ? "" : ", " + run.getParams().getParam("lanes") + " lanes") + "]";
+            double nsPerSymbol = run.getPrimaryResult().getScore();
+            Result alloc = run.getSecondaryResults().get("gc.alloc.rate.norm");
+            System.out.printf("%-40s %10.1f %12.1f %14s%n", name, 1000.0 / nsPerSymbol, nsPerSymbol,
+                    alloc == null ? "n/a" : String.format("%.2f", alloc.getScore()));
+        }
+    }
+}
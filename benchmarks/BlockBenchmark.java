@@ -0,0 +1,57 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import src.BlockCompressor;
+
+//Single-thread decompress of a block container; the mode picked per block shows up as the
+//difference between corpora (random is stored, the others mostly static). Scores are
+//nanoseconds per symbol like CodecBenchmark.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(CodecBenchmark.CORPUS_SIZE)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockBenchmark {
+    @Param({"text", "logs", "random", "skewed"})
+    public String corpus;
+
+    private ForkJoinPool pool;
+    private BlockCompressor compressor;
+    private byte[] container;
+
+    @Setup
+    public void setUp() {
+        pool = new ForkJoinPool(1);
+        compressor = new BlockCompressor(BlockCompressor.DEFAULT_BLOCK_SIZE / 4, pool);
+        container = compressor.compress(Corpora.generate(corpus, CodecBenchmark.CORPUS_SIZE));
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public byte[] decompress() throws IOException {
+        return compressor.decompress(container);
+    }
+}
@@ -0,0 +1,70 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import src.AdaptiveCodeModel;
+import src.Decoder;
+import src.Encoder;
+import src.EscapeCoder;
+
+//Scores are nanoseconds per input byte (one operation = one symbol), so MB/s = 1000 / score.
+//Run with -prof gc for allocations: gc.alloc.rate.norm is then bytes allocated per symbol.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(CodecBenchmark.CORPUS_SIZE)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+    static final int CORPUS_SIZE = 1 << 20;
+
+    @Param({"text", "logs", "random", "skewed"})
+    public String corpus;
+
+    @Param({"FGK", "VITTER"})
+    public AdaptiveCodeModel.Algorithm algorithm;
+
+    private byte[] data;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() {
+        data = Corpora.generate(corpus, CORPUS_SIZE);
+        encoded = new Encoder(algorithm).encode(data);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return new Encoder(algorithm).encode(data);
+    }
+
+    @Benchmark
+    public byte[] decode() throws IOException {
+        return new Decoder(algorithm).decode(encoded);
+    }
+
+    //Model maintenance alone, without any bit I/O
+    @Benchmark
+    public AdaptiveCodeModel update() {
+        AdaptiveCodeModel tree = algorithm.newModel(EscapeCoder.forBytes());
+        for (byte b : data) {
+            tree.update((char) (b & 0xFF));
+        }
+        return tree;
+    }
+}
@@ -0,0 +1,95 @@
+package benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+//Deterministic synthetic inputs shaped like the data we compress. Fixed seeds keep runs
+//comparable across commits.
+public final class Corpora {
+    private static final String[] WORDS = {
+        "the", "of", "and", "to", "in", "is", "that", "for", "it", "as", "with", "was", "on",
+        "adaptive", "huffman", "tree", "node", "weight", "symbol", "code", "stream", "update",
+        "compression", "decoder", "encoder", "block", "leader", "swap", "escape", "frequency"
+    };
+    private static final String[] LEVELS = {"INFO", "INFO", "INFO", "DEBUG", "WARN", "ERROR"};
+    private static final String[] LOGGERS = {
+        "c.e.api.RequestHandler", "c.e.db.ConnectionPool", "c.e.cache.LruCache", "c.e.auth.TokenService"
+    };
+
+    private Corpora() {
+    }
+
+    public static byte[] generate(String kind, int size) {
+        switch (kind) {
+            case "text":
+                return text(size);
+            case "logs":
+                return logs(size);
+            case "random":
+                return random(size);
+            case "skewed":
+                return skewed(size);
+            default:
+                throw new IllegalArgumentException("Unknown corpus: " + kind);
+        }
+    }
+
+    //Prose-like text with a Zipf-ish word distribution
+    static byte[] text(int size) {
+        Random random = new Random(1);
+        StringBuilder out = new StringBuilder(size + 64);
+        while (out.length() < size) {
+            int word = (int) Math.min(WORDS.length - 1, Math.abs(random.nextGaussian()) * WORDS.length / 3);
+            out.append(WORDS[word]);
+            int punctuation = random.nextInt(20);
+            out.append(punctuation == 0 ? ".\n" : punctuation == 1 ? ", " : " ");
+        }
+        return truncate(out, size);
+    }
+
+    //Application log lines: timestamps, levels, logger names, ids and short messages
+    static byte[] logs(int size) {
+        Random random = new Random(2);
+        StringBuilder out = new StringBuilder(size + 256);
+        long millis = 1_700_000_000_000L;
+        while (out.length() < size) {
+            millis += random.nextInt(50);
+            out.append("2024-05-").append(10 + (int) (millis / 86_400_000L) % 20)
+               .append('T').append(millis / 3_600_000L % 24).append(':')
+               .append(millis / 60_000L % 60).append(':').append(millis / 1000 % 60)
+               .append('.').append(millis % 1000).append(' ')
+               .append(LEVELS[random.nextInt(LEVELS.length)]).append(' ')
+               .append(LOGGERS[random.nextInt(LOGGERS.length)])
+               .append(" requestId=").append(Long.toHexString(random.nextLong()))
+               .append(" latencyMs=").append(random.nextInt(2000))
+               .append(" msg=\"").append(WORDS[random.nextInt(WORDS.length)]).append(' ')
+               .append(WORDS[random.nextInt(WORDS.length)]).append("\"\n");
+        }
+        return truncate(out, size);
+    }
+
+    //Uniform bytes: the worst case, every symbol escapes once and codes stay ~8 bits
+    static byte[] random(int size) {
+        byte[] out = new byte[size];
+        new Random(3).nextBytes(out);
+        return out;
+    }
+
+    //Geometric distribution over all 256 byte values: a few very hot symbols, a long tail
+    static byte[] skewed(int size) {
+        Random random = new Random(4);
+        byte[] out = new byte[size];
+        for (int i = 0; i < size; i++) {
+            int value = (int) (Math.log(1 - random.nextDouble()) / Math.log(0.85));
+            out[i] = (byte) Math.min(255, value);
+        }
+        return out;
+    }
+
+    private static byte[] truncate(StringBuilder text, int size) {
+        byte[] bytes = text.toString().getBytes(StandardCharsets.US_ASCII);
+        byte[] out = new byte[size];
+        System.arraycopy(bytes, 0, out, 0, size);
+        return out;
+    }
+}
@@ -0,0 +1,59 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import src.AdaptiveCodeModel;
+import src.LaneCodec;
+
+//Single-thread decode of one 1 MB block in the multi-lane format; lanes = 1 is the baseline.
+//Scores are nanoseconds per symbol like CodecBenchmark.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(CodecBenchmark.CORPUS_SIZE)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LaneBenchmark {
+    @Param({"text", "logs"})
+    public String corpus;
+
+    @Param({"FGK", "VITTER"})
+    public AdaptiveCodeModel.Algorithm algorithm;
+
+    @Param({"1", "2", "4", "8"})
+    public int lanes;
+
+    private LaneCodec codec;
+    private byte[] encoded;
+    private byte[] decoded;
+
+    @Setup
+    public void setUp() {
+        byte[] data = Corpora.generate(corpus, CodecBenchmark.CORPUS_SIZE);
+        codec = new LaneCodec(algorithm, lanes);
+        encoded = codec.encode(data, 0, data.length);
+        decoded = new byte[data.length];
+    }
+
+    @Benchmark
+    public byte[] decode() throws IOException {
+        codec.decode(ByteBuffer.wrap(encoded), decoded, 0, decoded.length);
+        return decoded;
+    }
+}
@@ -0,0 +1,66 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import src.AdaptiveCodeModel;
+import src.Encoder;
+import src.SessionPool;
+
+//Many small messages from several threads: a new Encoder per message against pooled, reset
+//ones. Scores are nanoseconds per input byte like CodecBenchmark; with -prof gc the
+//difference in gc.alloc.rate.norm is the per-message tree allocation the pool saves.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(SessionBenchmark.MESSAGE_SIZE)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class SessionBenchmark {
+    static final int MESSAGE_SIZE = 256;
+
+    @Param({"logs"})
+    public String corpus;
+
+    @Param({"FGK", "VITTER"})
+    public AdaptiveCodeModel.Algorithm algorithm;
+
+    private byte[] message;
+    private SessionPool<Encoder> pool;
+
+    @Setup
+    public void setUp() {
+        message = Corpora.generate(corpus, MESSAGE_SIZE);
+        pool = new SessionPool<>(() -> new Encoder(algorithm), Encoder::reset, 16);
+    }
+
+    @Benchmark
+    public byte[] fresh() {
+        return new Encoder(algorithm).encode(message);
+    }
+
+    @Benchmark
+    public byte[] pooled() {
+        Encoder encoder = pool.acquire();
+        try {
+            return encoder.encode(message);
+        } finally {
+            pool.release(encoder);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package src;
+
+//The adaptive prefix code shared by encoder and decoder: both sides call update() with every
+//symbol, so their trees stay identical without the tree ever being sent. Implementations
+//differ only in how update() restructures the tree.
+public interface AdaptiveCodeModel {
+
+    //Update rules that can be chosen per Encoder/Decoder; both ends must use the same one
+    enum Algorithm {
+        FGK,    // HuffmanTree: Faller-Gallager-Knuth
+        VITTER; // VitterHuffmanTree: Vitter's algorithm Lambda, minimal height among Huffman trees
+
+        public AdaptiveCodeModel newModel(EscapeCoder escapeCoder) {
+            return this == VITTER ? new VitterHuffmanTree(escapeCoder) : new HuffmanTree(escapeCoder);
+        }
+
+        //A model primed from the profile, or an empty one when profile is null
+        public AdaptiveCodeModel newModel(EscapeCoder escapeCoder, FrequencyProfile profile) {
+            if (profile == null) {
+                return newModel(escapeCoder);
+            }
+            return this == VITTER ? new VitterHuffmanTree(escapeCoder, profile) : new HuffmanTree(escapeCoder, profile);
+        }
+    }
+
+    //Writes the symbol's current code, or NYT's code plus the escaped symbol if it is new
+    void encode(char symbol, BitWriter out);
+
+    //Follows input bits from the root to a leaf; the result is internal only if the input ran out
+    Node decode(BitReader in);
+
+    //Debug form of decode over a '0'/'1' string, advancing position[0]
+    Node decode(String bits, int[] position);
+
+    //Reads the symbol that follows a decoded NYT code, or -1 if the input ends first
+    int decodeEscape(BitReader in);
+
+    void update(char symbol);
+
+    //Decodes the next symbol, escape included, and updates the model with it. Returns -1 and
+    //leaves the model as it was if the input ends inside the code or the escape.
+    //END_OF_STREAM is returned like any other symbol.
+    default int decodeSymbol(BitReader in) {
+        Node node = decode(in);
+        int symbol;
+        if (node.isNYT()) {
+            symbol = decodeEscape(in);
+            if (symbol < 0) {
+                return -1; // truncated escape
+            }
+        } else if (node.isLeaf()) {
+            symbol = node.getSymbol();
+        } else {
+            return -1; // ran out of bits inside the tree
+        }
+        update((char) symbol);
+        return symbol;
+    }
+
+    //Returns the model to its freshly constructed (or primed) state, reusing its memory
+    void reset();
+
+    Node getRoot();
+
+    Node getNYTNode();
+
+    Node getNodeForSymbol(char symbol);
+
+    EscapeCoder getEscapeCoder();
+
+    void setListener(CodecListener listener);
+
+    //Both ends of a stream must use the same policy, set before the first symbol
+    void setRescalePolicy(RescalePolicy policy);
+}
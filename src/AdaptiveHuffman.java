@@ -1,25 +1,32 @@
 package src;
 
 public class AdaptiveHuffman {
-    public static void main(String[] args) {
+    //With arguments this is the file compressor (see HuffmanCli); without, the demo
+    public static void main(String[] args) throws CorruptStreamException {
+        if (args.length > 0) {
+            HuffmanCli.main(args);
+            return;
+        }
         testAdaptiveHuffman("aacbdad");
         
         // Launch the visualizer
         Visualization.HuffmanTreeVisualizer.main(args);
     }
     
-    public static void testAdaptiveHuffman(String message) {
+    public static void testAdaptiveHuffman(String message) throws CorruptStreamException {
         System.out.println("Original message: " + message);
         System.out.println("=== ENCODING PROCESS ===");
         
         // Encoding process
         Encoder encoder = new Encoder();
+        encoder.setListener(new ConsoleTraceListener());
         String encoded = encoder.encode(message);
         System.out.println("\nFinal compressed stream: " + encoded);
         
         System.out.println("\n=== DECODING PROCESS ===");
         // Decoding process
         Decoder decoder = new Decoder();
+        decoder.setListener(new ConsoleTraceListener());
         String decoded = decoder.decode(encoded);
         System.out.println("\nFinal decoded message: " + decoded);
         
@@ -0,0 +1,115 @@
+package src;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+//Decompresses a stream produced by AdaptiveHuffmanOutputStream (or Encoder.encode(byte[]))
+//one symbol at a time, holding only a fixed-size window of the compressed input. Reading
+//stops at END_OF_STREAM; running out of input before it is an EOFException.
+public class AdaptiveHuffmanInputStream extends FilterInputStream {
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    // Enough buffered bits for the longest possible code plus an escape
+    private static final int LOOKAHEAD_BITS = 2048;
+
+    private final HuffmanTree tree;
+    private final ByteBuffer window;
+    private final BitReader bits;
+    private boolean eof;          // the wrapped stream is exhausted
+    private boolean finished;     // END_OF_STREAM has been decoded
+
+    public AdaptiveHuffmanInputStream(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    public AdaptiveHuffmanInputStream(InputStream in, int bufferSize) {
+        super(in);
+        this.tree = new HuffmanTree(EscapeCoder.forBytes());
+        this.window = ByteBuffer.allocate(Math.max(bufferSize, 2 * LOOKAHEAD_BITS / 8));
+        this.window.flip(); // start empty, in read mode
+        this.bits = new BitReader(window, 0);
+    }
+
+    @Override
+    public int read() throws IOException {
+        return decodeSymbol();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int count = 0;
+        while (count < len) {
+            int symbol = decodeSymbol();
+            if (symbol < 0) {
+                break;
+            }
+            b[off + count++] = (byte) symbol;
+        }
+        return count == 0 ? -1 : count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && decodeSymbol() >= 0) {
+            skipped++;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return 0;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private int decodeSymbol() throws IOException {
+        if (finished) {
+            return -1;
+        }
+        while (!eof && bits.remainingBits() < LOOKAHEAD_BITS) {
+            fill();
+        }
+        if (!bits.hasMore()) {
+            throw new EOFException("Stream ended before END_OF_STREAM");
+        }
+
+        int symbol = tree.decodeSymbol(bits);
+        if (symbol < 0) {
+            throw new EOFException("Stream ended inside a symbol");
+        }
+        if (symbol == EscapeCoder.END_OF_STREAM) {
+            finished = true;
+            return -1;
+        }
+        return symbol;
+    }
+
+    private void fill() throws IOException {
+        window.compact();
+        int n = in.read(window.array(), window.arrayOffset() + window.position(), window.remaining());
+        if (n > 0) {
+            window.position(window.position() + n);
+        }
+        window.flip();
+
+        if (n < 0) {
+            eof = true;
+        } else {
+            bits.extend(n * 8L);
+        }
+    }
+
+    public HuffmanTree getTree() {
+        return tree;
+    }
+}
@@ -0,0 +1,92 @@
+package src;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+//Compresses everything written to it with an adaptive HuffmanTree over the byte alphabet.
+//The output has the same layout as Encoder.encode(byte[]).
+public class AdaptiveHuffmanOutputStream extends FilterOutputStream {
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final HuffmanTree tree;
+    private final BitWriter bits;
+    private final int bufferSize;
+    private boolean finished;
+
+    public AdaptiveHuffmanOutputStream(OutputStream out) {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    public AdaptiveHuffmanOutputStream(OutputStream out, int bufferSize) {
+        super(out);
+        this.tree = new HuffmanTree(EscapeCoder.forBytes());
+        this.bufferSize = bufferSize;
+        // One symbol adds at most a few dozen bytes, so the buffer never grows past this
+        this.bits = new BitWriter(bufferSize + 128);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        char symbol = (char) (b & 0xFF);
+        tree.encode(symbol, bits);
+        tree.update(symbol);
+        if (bits.bufferedBytes() >= bufferSize) {
+            bits.drainTo(out);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        for (int i = off; i < off + len; i++) {
+            char symbol = (char) (b[i] & 0xFF);
+            tree.encode(symbol, bits);
+            tree.update(symbol);
+            if (bits.bufferedBytes() >= bufferSize) {
+                bits.drainTo(out);
+            }
+        }
+    }
+
+    //Pushes out all complete bytes. Bits of a partially coded byte stay buffered until finish().
+    @Override
+    public void flush() throws IOException {
+        if (!finished) {
+            bits.drainTo(out);
+        }
+        out.flush();
+    }
+
+    //Writes END_OF_STREAM and the final padded byte without closing the underlying stream
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        tree.encode((char) EscapeCoder.END_OF_STREAM, bits);
+        tree.update((char) EscapeCoder.END_OF_STREAM);
+        bits.alignToByte();
+        bits.drainTo(out);
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    public HuffmanTree getTree() {
+        return tree;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (finished) {
+            throw new IOException("Stream already finished");
+        }
+    }
+}
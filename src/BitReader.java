@@ -0,0 +1,105 @@
+package src;
+
+import java.nio.ByteBuffer;
+
+//Reads bits MSB-first from a ByteBuffer, buffering up to 64 bits in a word
+public class BitReader {
+    private final ByteBuffer source;
+    private long word;       // buffered bits, left-aligned at bit 63
+    private int wordBits;    // number of buffered bits
+    private long remaining;  // bits left before the logical end of the stream
+    private long position;   // bits consumed so far
+
+    public BitReader(byte[] data) {
+        this(ByteBuffer.wrap(data), (long) data.length * 8);
+    }
+
+    public BitReader(byte[] data, long bitLength) {
+        this(ByteBuffer.wrap(data), bitLength);
+    }
+
+    //Reads from the buffer's position up to its limit, stopping after bitLength bits
+    public BitReader(ByteBuffer source, long bitLength) {
+        this.source = source;
+        this.remaining = Math.min(bitLength, (long) source.remaining() * 8);
+    }
+
+    private void refill() {
+        while (wordBits <= 56 && source.hasRemaining()) {
+            word |= (long) (source.get() & 0xFF) << (56 - wordBits);
+            wordBits += 8;
+        }
+    }
+
+    //Streaming support: the owner appended `count` more bits to the source buffer
+    public void extend(long count) {
+        remaining += count;
+    }
+
+    public boolean hasMore() {
+        return remaining > 0;
+    }
+
+    public long remainingBits() {
+        return remaining;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    //Returns the next bit (0 or 1), or -1 once the stream is exhausted
+    public int readBit() {
+        if (remaining == 0) {
+            return -1;
+        }
+        if (wordBits == 0) {
+            refill();
+        }
+        int bit = (int) (word >>> 63);
+        word <<= 1;
+        wordBits--;
+        remaining--;
+        position++;
+        return bit;
+    }
+
+    //Returns the next `count` bits (count <= 32) without consuming them. Bits past the end of
+    //the source read as zero; compare against remainingBits() before trusting them.
+    public int peekBits(int count) {
+        if (wordBits < count) {
+            refill();
+        }
+        return (int) (word >>> (64 - count));
+    }
+
+    //Consumes `count` bits (count <= 32 and count <= remainingBits()) after a peek
+    public void skipBits(int count) {
+        if (wordBits < count) {
+            refill();
+        }
+        word <<= count;
+        wordBits -= count;
+        remaining -= count;
+        position += count;
+    }
+
+    //Reads `count` bits (count <= 32) as an unsigned value, or -1 if fewer remain
+    public int readBits(int count) {
+        if (count > remaining) {
+            return -1;
+        }
+        if (count == 0) {
+            return 0;
+        }
+        if (wordBits < count) {
+            refill();
+        }
+        int value = (int) (word >>> (64 - count));
+        word <<= count;
+        wordBits -= count;
+        remaining -= count;
+        position += count;
+        return value;
+    }
+}
@@ -0,0 +1,139 @@
+package src;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+//Packs bits MSB-first into 64-bit words and spills finished words into a byte array
+public class BitWriter {
+    private byte[] buffer;
+    private int byteCount;   // complete bytes already in buffer
+    private long word;       // pending bits, left-aligned at bit 63
+    private int wordBits;    // number of pending bits in word
+    private long totalBits;
+
+    public BitWriter() {
+        this(64);
+    }
+
+    public BitWriter(int initialCapacity) {
+        buffer = new byte[Math.max(8, initialCapacity)];
+    }
+
+    public void writeBit(int bit) {
+        word |= (long) (bit & 1) << (63 - wordBits);
+        totalBits++;
+        if (++wordBits == 64) {
+            spillWord();
+        }
+    }
+
+    //Writes the low `count` bits of value, most significant first (count <= 64)
+    public void writeBits(long value, int count) {
+        if (count == 0) {
+            return;
+        }
+        long bits = count == 64 ? value : value & ((1L << count) - 1);
+        int free = 64 - wordBits;
+        totalBits += count;
+        if (count < free) {
+            word |= bits << (free - count);
+            wordBits += count;
+        } else {
+            // Fill the current word, spill it, keep the rest
+            int rest = count - free;
+            word |= bits >>> rest;
+            wordBits = 64;
+            spillWord();
+            if (rest > 0) {
+                word = bits << (64 - rest);
+                wordBits = rest;
+            }
+        }
+    }
+
+    private void spillWord() {
+        ensureCapacity(byteCount + 8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[byteCount++] = (byte) (word >>> shift);
+        }
+        word = 0;
+        wordBits = 0;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(needed, buffer.length * 2));
+        }
+    }
+
+    //Discards everything written, keeping the buffer
+    public void clear() {
+        byteCount = 0;
+        word = 0;
+        wordBits = 0;
+        totalBits = 0;
+    }
+
+    public long bitLength() {
+        return totalBits;
+    }
+
+    //Complete bytes waiting in the buffer (not counting the partially filled word)
+    public int bufferedBytes() {
+        return byteCount;
+    }
+
+    //Pads with zero bits up to the next byte boundary and moves the pending bytes into the
+    //buffer. Returns the number of padding bits written (0-7).
+    public int alignToByte() {
+        int padding = (int) ((8 - (totalBits & 7)) & 7);
+        writeBits(0, padding);
+        ensureCapacity(byteCount + wordBits / 8);
+        for (int shift = 56; wordBits > 0; shift -= 8, wordBits -= 8) {
+            buffer[byteCount++] = (byte) (word >>> shift);
+        }
+        word = 0;
+        return padding;
+    }
+
+    //Writes the buffered complete bytes to the stream and empties the buffer; bits still
+    //pending in the current word stay behind. bitLength() keeps counting from the start.
+    public void drainTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, byteCount);
+        byteCount = 0;
+    }
+
+    //Moves as many buffered complete bytes as fit into dst and returns how many; the rest
+    //stay buffered for the next call
+    public int drainTo(ByteBuffer dst) {
+        int count = Math.min(byteCount, dst.remaining());
+        dst.put(buffer, 0, count);
+        byteCount -= count;
+        System.arraycopy(buffer, count, buffer, 0, byteCount);
+        return count;
+    }
+
+    //Returns the written bits packed into bytes, zero-padding the final byte
+    public byte[] toByteArray() {
+        int pendingBytes = (wordBits + 7) / 8;
+        byte[] out = Arrays.copyOf(buffer, byteCount + pendingBytes);
+        for (int i = 0; i < pendingBytes; i++) {
+            out[byteCount + i] = (byte) (word >>> (56 - 8 * i));
+        }
+        return out;
+    }
+
+    //Debug view: one '0'/'1' char per bit
+    @Override
+    public String toString() {
+        byte[] bytes = toByteArray();
+        StringBuilder bits = new StringBuilder((int) totalBits);
+        for (long i = 0; i < totalBits; i++) {
+            int b = bytes[(int) (i >>> 3)];
+            bits.append(((b >>> (7 - (int) (i & 7))) & 1) == 0 ? '0' : '1');
+        }
+        return bits.toString();
+    }
+}
@@ -0,0 +1,352 @@
+package src;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+//Block mode: the input is cut into fixed-size chunks, each coded with its own fresh tree, so
+//chunks can be encoded and decoded in parallel on a ForkJoinPool. Output is deterministic:
+//blocks are always written in input order whatever order the tasks finish in.
+//
+//Container layout (big-endian):
+//  "AHB1" magic, int blockSize
+//  per block: int rawLength, int compressedLength, compressed bytes (Encoder.encode format)
+//  end marker: int 0
+//compress() writes "AHB3": an int lane count follows the block size, and each block's
+//compressed bytes start with its Mode (see chooseMode). Adaptive blocks are in the LaneCodec
+//format when lanes > 1. decompress() also reads the older formats: "AHB1" (adaptive blocks
+//only) and "AHB2" (adaptive LaneCodec blocks, int lane count after the block size).
+public class BlockCompressor {
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+    static final int MAGIC = 0x41484231; // "AHB1"
+    static final int LANES_MAGIC = 0x41484232; // "AHB2"
+    static final int MODES_MAGIC = 0x41484233; // "AHB3"
+
+    //How one block is coded; the ordinal is the block's first byte
+    public enum Mode {
+        //Fresh adaptive tree (Encoder.encode, or LaneCodec with lanes > 1)
+        ADAPTIVE,
+        //Static canonical Huffman code with its lengths up front, decoded by table lookup
+        STATIC,
+        //The raw bytes
+        STORED
+    }
+
+    private static final Mode[] MODES = Mode.values();
+
+    private final int blockSize;
+    private final ForkJoinPool pool;
+    private final int lanes;
+
+    public BlockCompressor() {
+        this(DEFAULT_BLOCK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    public BlockCompressor(int blockSize, ForkJoinPool pool) {
+        this(blockSize, pool, 1);
+    }
+
+    //lanes > 1 codes adaptive blocks in the multi-lane format (see LaneCodec)
+    public BlockCompressor(int blockSize, ForkJoinPool pool, int lanes) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        this.blockSize = blockSize;
+        this.pool = pool;
+        this.lanes = LaneCodec.requireLaneCount(lanes);
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public byte[] compress(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+        try {
+            DataOutputStream header = new DataOutputStream(out);
+            writeHeader(header);
+            writeBlocks(data, data.length, out);
+            header.writeInt(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // only a failed block task can get here
+        }
+        return out.toByteArray();
+    }
+
+    //Streams the input through in batches of one block per pool thread, so memory stays at
+    //about 2 x parallelism x blockSize however long the input is
+    public void compress(InputStream in, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        writeHeader(data);
+
+        byte[] batch = new byte[blockSize * Math.max(1, pool.getParallelism())];
+        int filled;
+        while ((filled = in.readNBytes(batch, 0, batch.length)) > 0) {
+            writeBlocks(batch, filled, out);
+        }
+        data.writeInt(0);
+        data.flush();
+    }
+
+    private void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MODES_MAGIC);
+        out.writeInt(blockSize);
+        out.writeInt(lanes);
+    }
+
+    //Reads the header after the magic; returns the container's lane count (1 for "AHB1")
+    private static int readLanes(int magic, ByteBuffer in) throws IOException {
+        if (magic == MAGIC) {
+            return 1;
+        }
+        if ((magic != LANES_MAGIC && magic != MODES_MAGIC) || in.remaining() < 4) {
+            throw new IOException("Not a block container");
+        }
+        return checkLanes(magic, in.getInt());
+    }
+
+    private static int checkLanes(int magic, int lanes) throws IOException {
+        if (lanes < (magic == LANES_MAGIC ? 2 : 1) || lanes > LaneCodec.MAX_LANES) {
+            throw new IOException("Corrupt lane count " + lanes);
+        }
+        return lanes;
+    }
+
+    //Picks the smallest mode for a block from estimated sizes. STORED and STATIC sizes are
+    //exact. ADAPTIVE is estimated as the static code's bits with no table, plus 12 bits for
+    //each symbol every lane has to learn: its escape, and the longer codes it gets while
+    //the tree catches up with its weight. Drift within the block isn't modelled; the tree never
+    //forgets old counts, so it gains little from drift anyway. On a tie the faster mode wins:
+    //STORED, then STATIC, and ADAPTIVE has to save over 1/64 of the STATIC size, since a
+    //table decode is several times faster than a tree walk.
+    public static Mode chooseMode(byte[] data, int offset, int length, int lanes) {
+        return chooseMode(CanonicalHuffman.histogram(data, offset, length), length, lanes, null);
+    }
+
+    private static Mode chooseMode(int[] counts, int length, int lanes, CanonicalHuffman[] codeOut) {
+        if (length == 0) {
+            return Mode.STORED;
+        }
+        CanonicalHuffman code = CanonicalHuffman.fromCounts(counts);
+        if (codeOut != null) {
+            codeOut[0] = code;
+        }
+        long payloadBits = code.payloadBits(counts);
+        long staticBytes = code.tableBytes() + (payloadBits + 7) / 8;
+        long learned = (long) code.distinctSymbols() * Math.min(lanes, length) + 1; // + END_OF_STREAM
+        long adaptiveBytes = 4L * (lanes - 1) + (payloadBits + 12 * learned + 7) / 8;
+        if (length <= staticBytes && length <= adaptiveBytes) {
+            return Mode.STORED;
+        }
+        return adaptiveBytes + staticBytes / 64 < staticBytes ? Mode.ADAPTIVE : Mode.STATIC;
+    }
+
+    private EncodedBlock encodeBlock(byte[] data, int offset, int length) {
+        CanonicalHuffman[] code = new CanonicalHuffman[1];
+        Mode mode = chooseMode(CanonicalHuffman.histogram(data, offset, length), length, lanes, code);
+        switch (mode) {
+            case STORED:
+                return new EncodedBlock(mode, null);
+            case STATIC:
+                return new EncodedBlock(mode, code[0].encode(data, offset, length));
+            default:
+                byte[] bytes = lanes > 1
+                        ? new LaneCodec(AdaptiveCodeModel.Algorithm.FGK, lanes).encode(data, offset, length)
+                        : new Encoder().encode(data, offset, length);
+                return new EncodedBlock(mode, bytes);
+        }
+    }
+
+    //A coded block; bytes is null for STORED, whose bytes are copied straight from the input
+    private static final class EncodedBlock {
+        final Mode mode;
+        final byte[] bytes;
+
+        EncodedBlock(Mode mode, byte[] bytes) {
+            this.mode = mode;
+            this.bytes = bytes;
+        }
+    }
+
+    //Decodes a block of rawLength bytes into dst; false if it decoded to another length.
+    //Blocks of "AHB3" containers start with their mode byte.
+    private static boolean decodeBlock(int magic, int lanes, ByteBuffer block, byte[] dst, int offset, int rawLength)
+            throws IOException {
+        Mode mode = Mode.ADAPTIVE;
+        if (magic == MODES_MAGIC) {
+            if (!block.hasRemaining()) {
+                throw new EOFException("Missing block mode");
+            }
+            int ordinal = block.get() & 0xFF;
+            if (ordinal >= MODES.length) {
+                throw new IOException("Corrupt block mode " + ordinal);
+            }
+            mode = MODES[ordinal];
+        }
+        switch (mode) {
+            case STORED:
+                if (block.remaining() != rawLength) {
+                    return false;
+                }
+                block.get(dst, offset, rawLength);
+                return true;
+            case STATIC:
+                CanonicalHuffman.decode(block, dst, offset, rawLength);
+                return true;
+            default:
+                if (lanes > 1) {
+                    new LaneCodec(AdaptiveCodeModel.Algorithm.FGK, lanes).decode(block, dst, offset, rawLength);
+                    return true;
+                }
+                return new Decoder().decode(block, dst, offset, rawLength) == rawLength;
+        }
+    }
+
+    private void writeBlocks(byte[] data, int length, OutputStream out) throws IOException {
+        List<ForkJoinTask<EncodedBlock>> tasks = new ArrayList<>();
+        for (int offset = 0; offset < length; offset += blockSize) {
+            int start = offset;
+            int size = Math.min(blockSize, length - offset);
+            tasks.add(pool.submit(() -> encodeBlock(data, start, size)));
+        }
+
+        DataOutputStream frames = new DataOutputStream(out);
+        for (int i = 0; i < tasks.size(); i++) {
+            EncodedBlock block = join(tasks.get(i));
+            int rawLength = Math.min(blockSize, length - i * blockSize);
+            frames.writeInt(rawLength);
+            frames.writeInt(1 + (block.bytes == null ? rawLength : block.bytes.length));
+            frames.writeByte(block.mode.ordinal());
+            if (block.bytes == null) {
+                frames.write(data, i * blockSize, rawLength);
+            } else {
+                frames.write(block.bytes);
+            }
+        }
+    }
+
+    public byte[] decompress(byte[] container) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(container);
+        if (buffer.remaining() < 8) {
+            throw new IOException("Not a block container");
+        }
+        int magic = buffer.getInt();
+        int containerBlockSize = buffer.getInt();
+        int containerLanes = readLanes(magic, buffer);
+
+        // Index the frames first so every block knows where its output goes
+        List<int[]> frames = new ArrayList<>(); // {compressedOffset, compressedLength, rawOffset, rawLength}
+        long total = 0;
+        while (true) {
+            if (buffer.remaining() < 4) {
+                throw new EOFException("Missing end marker");
+            }
+            int rawLength = buffer.getInt();
+            if (rawLength == 0) {
+                break;
+            }
+            if (buffer.remaining() < 4) {
+                throw new EOFException("Truncated block header");
+            }
+            int compressedLength = buffer.getInt();
+            if (rawLength < 0 || rawLength > containerBlockSize
+                    || compressedLength < 0 || compressedLength > buffer.remaining()) {
+                throw new IOException("Corrupt block header at offset " + (buffer.position() - 8));
+            }
+            frames.add(new int[] {buffer.position(), compressedLength, (int) total, rawLength});
+            total += rawLength;
+            if (total > Integer.MAX_VALUE - 8) {
+                throw new IOException("Container too large for a byte array; use the stream API");
+            }
+            buffer.position(buffer.position() + compressedLength);
+        }
+
+        byte[] output = new byte[(int) total];
+        List<ForkJoinTask<Boolean>> tasks = new ArrayList<>();
+        for (int[] frame : frames) {
+            ByteBuffer slice = ByteBuffer.wrap(container, frame[0], frame[1]).slice();
+            tasks.add(pool.submit(() -> decodeBlock(magic, containerLanes, slice, output, frame[2], frame[3])));
+        }
+        for (int i = 0; i < tasks.size(); i++) {
+            if (!join(tasks.get(i))) {
+                throw new IOException("Block " + i + " decoded to the wrong length");
+            }
+        }
+        return output;
+    }
+
+    //Streaming inverse of compress(InputStream, OutputStream), decoding one batch of blocks at a time
+    public void decompress(InputStream in, OutputStream out) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        int magic = data.readInt();
+        if (magic != MAGIC && magic != LANES_MAGIC && magic != MODES_MAGIC) {
+            throw new IOException("Not a block container");
+        }
+        int containerBlockSize = data.readInt();
+        int containerLanes = magic == MAGIC ? 1 : checkLanes(magic, data.readInt());
+
+        int batchSize = Math.max(1, pool.getParallelism());
+        boolean done = false;
+        while (!done) {
+            List<byte[]> compressed = new ArrayList<>();
+            List<Integer> rawLengths = new ArrayList<>();
+            while (compressed.size() < batchSize) {
+                int rawLength = data.readInt();
+                if (rawLength == 0) {
+                    done = true;
+                    break;
+                }
+                int compressedLength = data.readInt();
+                if (rawLength < 0 || rawLength > containerBlockSize || compressedLength < 0) {
+                    throw new IOException("Corrupt block header");
+                }
+                byte[] block = data.readNBytes(compressedLength);
+                if (block.length < compressedLength) {
+                    throw new EOFException("Truncated block");
+                }
+                rawLengths.add(rawLength);
+                compressed.add(block);
+            }
+
+            List<ForkJoinTask<byte[]>> tasks = new ArrayList<>();
+            for (int i = 0; i < compressed.size(); i++) {
+                byte[] block = compressed.get(i);
+                int rawLength = rawLengths.get(i);
+                tasks.add(pool.submit(() -> {
+                    byte[] raw = new byte[rawLength];
+                    return decodeBlock(magic, containerLanes, ByteBuffer.wrap(block), raw, 0, rawLength) ? raw : null;
+                }));
+            }
+            for (ForkJoinTask<byte[]> task : tasks) {
+                byte[] raw = join(task);
+                if (raw == null) {
+                    throw new IOException("Block decoded to the wrong length");
+                }
+                out.write(raw);
+            }
+        }
+        out.flush();
+    }
+
+    private static <T> T join(ForkJoinTask<T> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a block", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Block task failed", e.getCause());
+        }
+    }
+}
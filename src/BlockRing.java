@@ -0,0 +1,121 @@
+package src;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+//Bounded single-producer/single-consumer ring of reusable byte blocks between two pipeline
+//stages. The blocks live in the ring: the producer fills the next free one and publishes it,
+//the consumer reads the oldest published one and releases it back, so nothing is allocated
+//or handed through a queue. A side with nothing to do parks (virtual threads unmount) until
+//the other side moves; counters are volatile and each side re-checks after announcing that it
+//parks, so no wakeup is lost.
+final class BlockRing {
+    private final ByteBuffer[] blocks;
+    private final AtomicLong published = new AtomicLong(); // blocks ever published (producer)
+    private final AtomicLong released = new AtomicLong();  // blocks ever released (consumer)
+    private volatile boolean closed;
+    private volatile Throwable failure;
+    private volatile Thread parkedProducer;
+    private volatile Thread parkedConsumer;
+
+    BlockRing(int depth, int blockSize) {
+        if (depth < 1 || blockSize < 1) {
+            throw new IllegalArgumentException("Ring depth and block size must be positive: " + depth + ", " + blockSize);
+        }
+        blocks = new ByteBuffer[depth];
+        for (int i = 0; i < depth; i++) {
+            blocks[i] = ByteBuffer.allocateDirect(blockSize);
+        }
+    }
+
+    //Empties the ring for the next job; neither side may be using it
+    void reset() {
+        published.set(0);
+        released.set(0);
+        closed = false;
+        failure = null;
+        parkedProducer = null;
+        parkedConsumer = null;
+    }
+
+    //Producer: the next free block, cleared for writing; waits while all are in use
+    ByteBuffer claim() throws IOException {
+        long next = published.get();
+        while (next - released.get() == blocks.length) {
+            checkFailure();
+            parkedProducer = Thread.currentThread();
+            if (next - released.get() == blocks.length && failure == null) {
+                park();
+            }
+            parkedProducer = null;
+        }
+        checkFailure();
+        return blocks[(int) (next % blocks.length)].clear();
+    }
+
+    //Producer: hands the claimed block, flipped for reading, to the consumer
+    void publish() {
+        published.set(published.get() + 1);
+        LockSupport.unpark(parkedConsumer);
+    }
+
+    //Producer: no more blocks will be published
+    void close() {
+        closed = true;
+        LockSupport.unpark(parkedConsumer);
+    }
+
+    //Consumer: the oldest published block, or null once the ring is closed and drained
+    ByteBuffer take() throws IOException {
+        long next = released.get();
+        while (next == published.get()) {
+            checkFailure();
+            if (closed) {
+                // published before closed, so one more look settles it
+                if (next == published.get()) {
+                    return null;
+                }
+                break;
+            }
+            parkedConsumer = Thread.currentThread();
+            if (next == published.get() && !closed && failure == null) {
+                park();
+            }
+            parkedConsumer = null;
+        }
+        checkFailure();
+        return blocks[(int) (next % blocks.length)];
+    }
+
+    //Consumer: gives the taken block back to the producer
+    void release() {
+        released.set(released.get() + 1);
+        LockSupport.unpark(parkedProducer);
+    }
+
+    //Either side: stops both; their next claim() or take() throws
+    void fail(Throwable cause) {
+        if (failure == null) {
+            failure = cause;
+        }
+        LockSupport.unpark(parkedProducer);
+        LockSupport.unpark(parkedConsumer);
+    }
+
+    private void checkFailure() throws IOException {
+        Throwable cause = failure;
+        if (cause != null) {
+            throw new IOException("Pipeline stopped", cause);
+        }
+    }
+
+    private static void park() throws InterruptedIOException {
+        LockSupport.park();
+        if (Thread.interrupted()) {
+            throw new InterruptedIOException("Interrupted while waiting for a pipeline block");
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package src;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.PriorityQueue;
+
+//Two-pass static Huffman code over bytes for BlockCompressor's STATIC blocks. Only code
+//lengths are stored; codes are canonical (shorter first, then by symbol), and lengths are
+//capped at MAX_CODE_LENGTH so a decoder needs one table lookup per symbol and no tree.
+//
+//Block layout: a 32-byte bitmap of the symbols present (bit 7 of byte 0 is symbol 0), their
+//code lengths as 4-bit values in symbol order padded to a byte, then the codes MSB-first
+//padded to a byte. The caller stores the block's raw length.
+final class CanonicalHuffman {
+    static final int MAX_CODE_LENGTH = 12;
+    private static final int SYMBOLS = 256;
+    private static final int BITMAP_BYTES = SYMBOLS / 8;
+
+    private final int[] lengths;
+    private final int[] codes;
+    private final int distinct;
+
+    private CanonicalHuffman(int[] lengths) {
+        this.lengths = lengths;
+        this.codes = assignCodes(lengths);
+        int present = 0;
+        for (int length : lengths) {
+            if (length > 0) {
+                present++;
+            }
+        }
+        this.distinct = present;
+    }
+
+    //Byte counts of data[offset, offset + length)
+    static int[] histogram(byte[] data, int offset, int length) {
+        int[] counts = new int[SYMBOLS];
+        for (int i = offset; i < offset + length; i++) {
+            counts[data[i] & 0xFF]++;
+        }
+        return counts;
+    }
+
+    //Code for the given byte counts, of which at least one must be positive
+    static CanonicalHuffman fromCounts(int[] counts) {
+        int[] scaled = counts.clone();
+        while (true) {
+            int[] lengths = codeLengths(scaled);
+            int max = 0;
+            for (int length : lengths) {
+                max = Math.max(max, length);
+            }
+            if (max <= MAX_CODE_LENGTH) {
+                return new CanonicalHuffman(lengths);
+            }
+            // Too deep: flatten the distribution and try again; rare symbols stay present
+            for (int s = 0; s < SYMBOLS; s++) {
+                if (scaled[s] > 0) {
+                    scaled[s] = Math.max(1, scaled[s] >>> 1);
+                }
+            }
+        }
+    }
+
+    //Unlimited Huffman code lengths; a lone symbol gets a 1-bit code
+    private static int[] codeLengths(int[] counts) {
+        // Entries are weight << 10 | node; leaves are nodes 0..255, merged nodes 256 and up
+        PriorityQueue<Long> queue = new PriorityQueue<>();
+        for (int s = 0; s < SYMBOLS; s++) {
+            if (counts[s] > 0) {
+                queue.add((long) counts[s] << 10 | s);
+            }
+        }
+        int[] lengths = new int[SYMBOLS];
+        if (queue.size() == 1) {
+            lengths[(int) (queue.peek() & 0x3FF)] = 1;
+            return lengths;
+        }
+        int[] parent = new int[2 * SYMBOLS];
+        int next = SYMBOLS;
+        while (queue.size() > 1) {
+            long a = queue.poll();
+            long b = queue.poll();
+            parent[(int) (a & 0x3FF)] = next;
+            parent[(int) (b & 0x3FF)] = next;
+            queue.add(((a >>> 10) + (b >>> 10)) << 10 | next);
+            next++;
+        }
+        // A parent is always numbered after its children, so walk down from the root
+        int[] depth = new int[2 * SYMBOLS];
+        for (int node = next - 2; node >= SYMBOLS; node--) {
+            depth[node] = depth[parent[node]] + 1;
+        }
+        for (int s = 0; s < SYMBOLS; s++) {
+            if (counts[s] > 0) {
+                lengths[s] = depth[parent[s]] + 1;
+            }
+        }
+        return lengths;
+    }
+
+    private static int[] assignCodes(int[] lengths) {
+        int[] lengthCount = new int[MAX_CODE_LENGTH + 1];
+        for (int length : lengths) {
+            lengthCount[length]++;
+        }
+        lengthCount[0] = 0;
+        int[] nextCode = new int[MAX_CODE_LENGTH + 1];
+        int code = 0;
+        for (int length = 1; length <= MAX_CODE_LENGTH; length++) {
+            code = (code + lengthCount[length - 1]) << 1;
+            nextCode[length] = code;
+        }
+        int[] codes = new int[SYMBOLS];
+        for (int s = 0; s < SYMBOLS; s++) {
+            if (lengths[s] > 0) {
+                codes[s] = nextCode[lengths[s]]++;
+            }
+        }
+        return codes;
+    }
+
+    int tableBytes() {
+        return BITMAP_BYTES + (distinct + 1) / 2;
+    }
+
+    //Bits of code, without the table, for data with these counts
+    long payloadBits(int[] counts) {
+        long bits = 0;
+        for (int s = 0; s < SYMBOLS; s++) {
+            bits += (long) counts[s] * lengths[s];
+        }
+        return bits;
+    }
+
+    int distinctSymbols() {
+        return distinct;
+    }
+
+    byte[] encode(byte[] data, int offset, int length) {
+        BitWriter out = new BitWriter(tableBytes() + length / 2 + 8);
+        for (int s = 0; s < SYMBOLS; s += 8) {
+            int mask = 0;
+            for (int bit = 0; bit < 8; bit++) {
+                mask = mask << 1 | (lengths[s + bit] > 0 ? 1 : 0);
+            }
+            out.writeBits(mask, 8);
+        }
+        for (int s = 0; s < SYMBOLS; s++) {
+            if (lengths[s] > 0) {
+                out.writeBits(lengths[s], 4);
+            }
+        }
+        out.alignToByte();
+        for (int i = offset; i < offset + length; i++) {
+            int s = data[i] & 0xFF;
+            out.writeBits(codes[s], lengths[s]);
+        }
+        return out.toByteArray();
+    }
+
+    //Decodes a block of `length` bytes from the buffer's remaining bytes into dst
+    static void decode(ByteBuffer encoded, byte[] dst, int offset, int length) throws IOException {
+        ByteBuffer block = encoded.slice();
+        if (block.remaining() < BITMAP_BYTES) {
+            throw new EOFException("Truncated code table");
+        }
+        int[] lengths = new int[SYMBOLS];
+        BitReader in = new BitReader(block, block.remaining() * 8L);
+        int present = 0;
+        for (int s = 0; s < SYMBOLS; s++) {
+            if (in.readBits(1) == 1) {
+                lengths[s] = -1;
+                present++;
+            }
+        }
+        int maxLength = 0;
+        for (int s = 0; s < SYMBOLS; s++) {
+            if (lengths[s] < 0) {
+                lengths[s] = in.readBits(4);
+                if (lengths[s] <= 0 || lengths[s] > MAX_CODE_LENGTH) {
+                    throw new IOException("Corrupt code length for symbol " + s);
+                }
+                maxLength = Math.max(maxLength, lengths[s]);
+            }
+        }
+        if (present == 0 && length > 0) {
+            throw new IOException("Empty code table");
+        }
+        if ((present & 1) == 1) {
+            in.readBits(4);
+        }
+
+        // Every index whose top bits are a symbol's code maps to (symbol << 8 | length);
+        // 0 marks bit patterns no code starts with
+        int[] codes = assignCodes(lengths);
+        int[] table = new int[1 << maxLength];
+        for (int s = 0; s < SYMBOLS; s++) {
+            int codeLength = lengths[s];
+            if (codeLength == 0) {
+                continue;
+            }
+            int first = codes[s] << (maxLength - codeLength);
+            int last = first + (1 << (maxLength - codeLength));
+            if (last > table.length) {
+                throw new IOException("Code lengths overflow the code space");
+            }
+            for (int index = first; index < last; index++) {
+                table[index] = s << 8 | codeLength;
+            }
+        }
+
+        for (int i = offset; i < offset + length; i++) {
+            int entry = table[in.peekBits(maxLength)];
+            int codeLength = entry & 0xFF;
+            if (codeLength == 0) {
+                throw new IOException("Invalid code at bit " + in.getPosition());
+            }
+            if (codeLength > in.remainingBits()) {
+                throw new EOFException("Block ended inside a code");
+            }
+            in.skipBits(codeLength);
+            dst[i] = (byte) (entry >>> 8);
+        }
+    }
+}
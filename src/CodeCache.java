@@ -0,0 +1,59 @@
+package src;
+
+import java.util.Arrays;
+
+//Encoder-side cache of each leaf's current code as (bits, length), indexed by symbol with one
+//extra slot for NYT. A swap changes the codes of every leaf under the two moved positions and
+//nothing else, so only those leaves are dropped. Codes longer than 64 bits are never cached.
+class CodeCache {
+    private static final byte INVALID = -1;
+
+    private final long[] bits;
+    private final byte[] lengths;
+    private final int nytIndex;
+
+    CodeCache(int alphabetSize) {
+        nytIndex = alphabetSize;
+        bits = new long[alphabetSize + 1];
+        lengths = new byte[alphabetSize + 1];
+        Arrays.fill(lengths, INVALID);
+    }
+
+    private int indexOf(Node leaf) {
+        return leaf.isNYT() ? nytIndex : leaf.getSymbol();
+    }
+
+    //Writes the cached code and returns true, or returns false on a miss
+    boolean write(Node leaf, BitWriter out) {
+        int index = indexOf(leaf);
+        int length = lengths[index];
+        if (length == INVALID) {
+            return false;
+        }
+        out.writeBits(bits[index], length);
+        return true;
+    }
+
+    void store(Node leaf, long code, int length) {
+        int index = indexOf(leaf);
+        bits[index] = code;
+        lengths[index] = (byte) length;
+    }
+
+    void invalidate(Node leaf) {
+        lengths[indexOf(leaf)] = INVALID;
+    }
+
+    void invalidateAll() {
+        Arrays.fill(lengths, INVALID);
+    }
+
+    void invalidateSubtree(Node node) {
+        if (node.isLeaf()) {
+            invalidate(node);
+        } else {
+            invalidateSubtree(node.getLeftChild());
+            invalidateSubtree(node.getRightChild());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package src;
+
+//Hook for watching a codec work. Every method defaults to a no-op, and NONE is installed
+//unless a listener is set, so an untraced codec only pays for empty calls the JIT inlines away.
+public interface CodecListener {
+    CodecListener NONE = new CodecListener() {};
+
+    //A symbol was encoded; its code occupies output bits [startBit, output.bitLength())
+    default void symbolEncoded(int symbol, BitWriter output, long startBit) {}
+
+    default void symbolDecoded(int symbol) {}
+
+    //A new symbol was sent or received as NYT code + escape
+    default void escapeCoded(int symbol) {}
+
+    //Two nodes were exchanged during an update (after the swap)
+    default void swapPerformed(Node a, Node b) {}
+
+    //Return true to get symbolUpdated after every tree update; it costs two walks to the root
+    default boolean wantsUpdateStats() {
+        return false;
+    }
+
+    //Asked before each measured update: return true to have it timed
+    default boolean timeNextUpdate() {
+        return false;
+    }
+
+    //A tree was updated with a symbol whose code was codeLength bits (NYT's code for a new
+    //symbol) while the tree was treeDepth levels deep. nanos is the update's duration, or -1
+    //when it wasn't timed.
+    default void symbolUpdated(int codeLength, int treeDepth, long nanos) {}
+
+    //The tree's weights were rescaled and the tree rebuilt (see RescalePolicy)
+    default void treeRescaled() {}
+
+    //Return true to get treeSnapshot after every symbol; rendering a tree is expensive
+    default boolean wantsSnapshots() {
+        return false;
+    }
+
+    default void treeSnapshot(AdaptiveCodeModel tree) {}
+}
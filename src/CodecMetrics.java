@@ -0,0 +1,298 @@
+package src;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+//Production counters for any number of encoders and decoders: install one instance with
+//setListener on all of them, then poll snapshot() or read it over JMX after register().
+//Counters are LongAdders, striped per thread under contention, so concurrent codecs sharing
+//one instance don't fight over a cache line.
+//
+//Code length is the tree code of each updated symbol (NYT's for a new one), without escape
+//bits; in order-1 mode a symbol new to its context counts in both trees. Bits per symbol is
+//everything encoders wrote, escapes included, over the symbols they encoded. Tree depth is
+//the deepest tree seen. Only one update in sampleEvery is timed, since reading the clock
+//costs about as much as an update.
+public class CodecMetrics implements CodecListener, CodecMetricsMXBean {
+    public static final int DEFAULT_SAMPLE_EVERY = 64;
+    private static final int BUCKETS = 64;
+
+    private final int sampleEvery;
+    private final LongAdder symbolsEncoded = new LongAdder();
+    private final LongAdder symbolsDecoded = new LongAdder();
+    private final LongAdder encodedBits = new LongAdder();
+    private final LongAdder escapes = new LongAdder();
+    private final LongAdder swaps = new LongAdder();
+    private final LongAdder rescales = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder codeLengthSum = new LongAdder();
+    private final LongAccumulator maxCodeLength = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxTreeDepth = new LongAccumulator(Math::max, 0);
+    private final LongAdder[] latency = new LongAdder[BUCKETS];
+
+    public CodecMetrics() {
+        this(DEFAULT_SAMPLE_EVERY);
+    }
+
+    public CodecMetrics(int sampleEvery) {
+        if (sampleEvery < 1) {
+            throw new IllegalArgumentException("Sampling interval must be positive: " + sampleEvery);
+        }
+        this.sampleEvery = sampleEvery;
+        for (int i = 0; i < BUCKETS; i++) {
+            latency[i] = new LongAdder();
+        }
+    }
+
+    //Registers with the platform MBean server as src:type=CodecMetrics,name=<name>
+    public ObjectName register(String name) {
+        try {
+            ObjectName objectName = ObjectName.getInstance("src:type=CodecMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Cannot register metrics as " + name, e);
+        }
+    }
+
+    @Override
+    public void symbolEncoded(int symbol, BitWriter output, long startBit) {
+        symbolsEncoded.increment();
+        encodedBits.add(output.bitLength() - startBit);
+    }
+
+    @Override
+    public void symbolDecoded(int symbol) {
+        symbolsDecoded.increment();
+    }
+
+    @Override
+    public void escapeCoded(int symbol) {
+        escapes.increment();
+    }
+
+    @Override
+    public void swapPerformed(Node a, Node b) {
+        swaps.increment();
+    }
+
+    @Override
+    public void treeRescaled() {
+        rescales.increment();
+    }
+
+    @Override
+    public boolean wantsUpdateStats() {
+        return true;
+    }
+
+    @Override
+    public boolean timeNextUpdate() {
+        return sampleEvery == 1 || ThreadLocalRandom.current().nextInt(sampleEvery) == 0;
+    }
+
+    @Override
+    public void symbolUpdated(int codeLength, int treeDepth, long nanos) {
+        updates.increment();
+        codeLengthSum.add(codeLength);
+        maxCodeLength.accumulate(codeLength);
+        maxTreeDepth.accumulate(treeDepth);
+        if (nanos >= 0) {
+            latency[63 - Long.numberOfLeadingZeros(nanos | 1)].increment();
+        }
+    }
+
+    //A consistent-enough copy of the counters: each is read once, while codecs keep running
+    public Snapshot snapshot() {
+        long[] histogram = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            histogram[i] = latency[i].sum();
+        }
+        return new Snapshot(symbolsEncoded.sum(), symbolsDecoded.sum(), encodedBits.sum(), escapes.sum(),
+                swaps.sum(), rescales.sum(), updates.sum(), codeLengthSum.sum(),
+                (int) maxCodeLength.get(), (int) maxTreeDepth.get(), histogram);
+    }
+
+    @Override
+    public void reset() {
+        symbolsEncoded.reset();
+        symbolsDecoded.reset();
+        encodedBits.reset();
+        escapes.reset();
+        swaps.reset();
+        rescales.reset();
+        updates.reset();
+        codeLengthSum.reset();
+        maxCodeLength.reset();
+        maxTreeDepth.reset();
+        for (LongAdder bucket : latency) {
+            bucket.reset();
+        }
+    }
+
+    @Override
+    public long getSymbolsEncoded() {
+        return symbolsEncoded.sum();
+    }
+
+    @Override
+    public long getSymbolsDecoded() {
+        return symbolsDecoded.sum();
+    }
+
+    @Override
+    public long getEscapes() {
+        return escapes.sum();
+    }
+
+    @Override
+    public long getSwaps() {
+        return swaps.sum();
+    }
+
+    @Override
+    public long getRescales() {
+        return rescales.sum();
+    }
+
+    @Override
+    public double getAverageCodeLength() {
+        return snapshot().getAverageCodeLength();
+    }
+
+    @Override
+    public int getMaxCodeLength() {
+        return (int) maxCodeLength.get();
+    }
+
+    @Override
+    public int getMaxTreeDepth() {
+        return (int) maxTreeDepth.get();
+    }
+
+    @Override
+    public double getBitsPerSymbol() {
+        return snapshot().getBitsPerSymbol();
+    }
+
+    @Override
+    public long getUpdateLatencyP50() {
+        return snapshot().getUpdateLatencyPercentile(50);
+    }
+
+    @Override
+    public long getUpdateLatencyP99() {
+        return snapshot().getUpdateLatencyPercentile(99);
+    }
+
+    @Override
+    public long[] getUpdateLatencyHistogram() {
+        return snapshot().getUpdateLatencyHistogram();
+    }
+
+    public static final class Snapshot {
+        private final long symbolsEncoded;
+        private final long symbolsDecoded;
+        private final long encodedBits;
+        private final long escapes;
+        private final long swaps;
+        private final long rescales;
+        private final long updates;
+        private final long codeLengthSum;
+        private final int maxCodeLength;
+        private final int maxTreeDepth;
+        private final long[] latencyHistogram;
+
+        Snapshot(long symbolsEncoded, long symbolsDecoded, long encodedBits, long escapes, long swaps,
+                 long rescales, long updates, long codeLengthSum, int maxCodeLength, int maxTreeDepth,
+                 long[] latencyHistogram) {
+            this.symbolsEncoded = symbolsEncoded;
+            this.symbolsDecoded = symbolsDecoded;
+            this.encodedBits = encodedBits;
+            this.escapes = escapes;
+            this.swaps = swaps;
+            this.rescales = rescales;
+            this.updates = updates;
+            this.codeLengthSum = codeLengthSum;
+            this.maxCodeLength = maxCodeLength;
+            this.maxTreeDepth = maxTreeDepth;
+            this.latencyHistogram = latencyHistogram;
+        }
+
+        public long getSymbolsEncoded() {
+            return symbolsEncoded;
+        }
+
+        public long getSymbolsDecoded() {
+            return symbolsDecoded;
+        }
+
+        public long getEscapes() {
+            return escapes;
+        }
+
+        public long getSwaps() {
+            return swaps;
+        }
+
+        public long getRescales() {
+            return rescales;
+        }
+
+        public long getUpdates() {
+            return updates;
+        }
+
+        public double getAverageCodeLength() {
+            return updates == 0 ? 0 : (double) codeLengthSum / updates;
+        }
+
+        public int getMaxCodeLength() {
+            return maxCodeLength;
+        }
+
+        public int getMaxTreeDepth() {
+            return maxTreeDepth;
+        }
+
+        public double getBitsPerSymbol() {
+            return symbolsEncoded == 0 ? 0 : (double) encodedBits / symbolsEncoded;
+        }
+
+        public long[] getUpdateLatencyHistogram() {
+            return latencyHistogram.clone();
+        }
+
+        //Upper bound in nanoseconds of the bucket holding the given percentile, 0 if nothing
+        //was timed
+        public long getUpdateLatencyPercentile(double percentile) {
+            long total = 0;
+            for (long count : latencyHistogram) {
+                total += count;
+            }
+            long rank = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += latencyHistogram[i];
+                if (seen >= rank && seen > 0) {
+                    return i == BUCKETS - 1 ? Long.MAX_VALUE : (2L << i) - 1;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("symbols %d enc / %d dec, %.3f bits/symbol, escapes %d, swaps %d, rescales %d, "
+                            + "code length avg %.2f max %d, tree depth %d, update p50 %d ns p99 %d ns",
+                    symbolsEncoded, symbolsDecoded, getBitsPerSymbol(), escapes, swaps, rescales,
+                    getAverageCodeLength(), maxCodeLength, maxTreeDepth,
+                    getUpdateLatencyPercentile(50), getUpdateLatencyPercentile(99));
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package src;
+
+//JMX view of a CodecMetrics; see CodecMetrics.register. Values are totals since the last reset
+//over every codec the metrics are installed on.
+public interface CodecMetricsMXBean {
+    long getSymbolsEncoded();
+
+    long getSymbolsDecoded();
+
+    long getEscapes();
+
+    long getSwaps();
+
+    long getRescales();
+
+    double getAverageCodeLength();
+
+    int getMaxCodeLength();
+
+    int getMaxTreeDepth();
+
+    double getBitsPerSymbol();
+
+    //Update durations in nanoseconds, from the sampled updates
+    long getUpdateLatencyP50();
+
+    long getUpdateLatencyP99();
+
+    //Sampled update count per bucket; bucket i counts durations in [2^i, 2^(i+1)) ns
+    long[] getUpdateLatencyHistogram();
+
+    void reset();
+}
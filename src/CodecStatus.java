@@ -0,0 +1,15 @@
+package src;
+
+//What a buffer-to-buffer encode or decode call stopped on; see Encoder.encode(ByteBuffer,
+//ByteBuffer) and Decoder.decode(ByteBuffer, ByteBuffer)
+public enum CodecStatus {
+    //All input was consumed; call again with more (or, when encoding, after finish())
+    NEEDS_INPUT,
+    //dst is full and output is pending; call again with room in dst
+    NEEDS_OUTPUT,
+    //Sync-flush mode: a sync point was passed and everything before it is in dst (decoding)
+    //or in dst's share of the output (encoding); call again to go on with the stream
+    FLUSHED,
+    //The stream is complete and all of it is in dst; reset() starts another
+    FINISHED
+}
@@ -0,0 +1,19 @@
+package src;
+
+//Bytes read and written by one compress or decompress run, and how long it took; returned by
+//HuffmanCli and CompressionPipeline
+public final class CodecTotals {
+    public final long bytesIn;
+    public final long bytesOut;
+    public final long nanos;
+
+    CodecTotals(long bytesIn, long bytesOut, long nanos) {
+        this.bytesIn = bytesIn;
+        this.bytesOut = bytesOut;
+        this.nanos = nanos;
+    }
+
+    public double megabytesPerSecond(long bytes) {
+        return nanos == 0 ? 0 : bytes * 1000.0 / nanos;
+    }
+}
@@ -0,0 +1,260 @@
+package src;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ThreadFactory;
+
+//Streams a channel through an Encoder or Decoder in three stages: a reader thread fills input
+//blocks, the calling thread codes them into output blocks, and a writer thread drains those.
+//Stages meet at two BlockRings, so a read or write that blocks doesn't stall coding, and
+//memory per job is 2 x depth x blockSize whatever the input length. The output has the
+//Encoder.encode(byte[]) layout, as with HuffmanCli.
+//
+//Reader and writer run on virtual threads when the JDK has them (21+; looked up reflectively,
+//since we build for 17) and on daemon platform threads otherwise. Submit each job from its
+//own virtual thread and one JVM runs thousands of them; a pipeline runs one job at a time, so
+//pool them with SessionPool.
+public class CompressionPipeline {
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 14;
+    public static final int DEFAULT_DEPTH = 4;
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+    private static final ThreadFactory STAGE_THREADS = stageThreadFactory();
+
+    private final Encoder encoder;
+    private final Decoder decoder;
+    private BlockRing input;
+    private final BlockRing output;
+    private Thread lastReader;
+    private final int blockSize;
+    private final int depth;
+
+    //profile may be null
+    public CompressionPipeline(AdaptiveCodeModel.Algorithm algorithm, int order1Contexts, FrequencyProfile profile) {
+        this(algorithm, order1Contexts, profile, DEFAULT_BLOCK_SIZE, DEFAULT_DEPTH);
+    }
+
+    public CompressionPipeline(AdaptiveCodeModel.Algorithm algorithm, int order1Contexts, FrequencyProfile profile,
+                               int blockSize, int depth) {
+        encoder = new Encoder(algorithm, profile);
+        encoder.setOrder1(order1Contexts);
+        decoder = new Decoder(algorithm, profile);
+        decoder.setOrder1(order1Contexts);
+        this.blockSize = blockSize;
+        this.depth = depth;
+        input = new BlockRing(depth, blockSize);
+        output = new BlockRing(depth, blockSize);
+    }
+
+    //True when stages run on virtual threads
+    public static boolean usesVirtualThreads() {
+        return !(STAGE_THREADS instanceof PlatformThreads);
+    }
+
+    //Reads in to its end and writes one compressed stream to out
+    public CodecTotals compress(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        long start = System.nanoTime();
+        Stages stages = start(in, out);
+        try {
+            ByteBuffer dst = output.claim();
+            CodecStatus status;
+            do {
+                ByteBuffer src = input.take();
+                if (src == null) {
+                    encoder.finish();
+                    src = EMPTY;
+                }
+                while ((status = encoder.encode(src, dst)) == CodecStatus.NEEDS_OUTPUT) {
+                    dst.flip();
+                    output.publish();
+                    dst = output.claim();
+                }
+                if (src != EMPTY) {
+                    input.release();
+                }
+            } while (status != CodecStatus.FINISHED);
+            dst.flip();
+            output.publish();
+            output.close();
+            stages.finishReading();
+            stages.finishWriting();
+        } catch (IOException | RuntimeException e) {
+            stages.abort(e);
+            throw e;
+        } finally {
+            encoder.reset();
+        }
+        return new CodecTotals(stages.bytesRead, stages.bytesWritten, System.nanoTime() - start);
+    }
+
+    //Decodes one compressed stream from in; input after END_OF_STREAM is ignored
+    public CodecTotals decompress(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        long start = System.nanoTime();
+        Stages stages = start(in, out);
+        long consumed = 0;
+        try {
+            ByteBuffer dst = output.claim();
+            ByteBuffer src = EMPTY;
+            CodecStatus status = CodecStatus.NEEDS_INPUT;
+            while (status != CodecStatus.FINISHED) {
+                if (status == CodecStatus.NEEDS_INPUT) {
+                    if (src != EMPTY) {
+                        input.release();
+                    }
+                    src = input.take();
+                    if (src == null) {
+                        throw new EOFException("Stream ended before END_OF_STREAM");
+                    }
+                    consumed += src.remaining();
+                }
+                status = decoder.decode(src, dst);
+                if (status == CodecStatus.NEEDS_OUTPUT) {
+                    dst.flip();
+                    output.publish();
+                    dst = output.claim();
+                }
+            }
+            consumed -= src.remaining();
+            dst.flip();
+            output.publish();
+            output.close();
+            // The rest of the input is unused; stop the reader at its next block. It may be
+            // blocked in read() on a pipe or socket that stays open, so it isn't waited for.
+            input.fail(new IOException("Stream finished"));
+            stages.finishWriting();
+        } catch (IOException | RuntimeException e) {
+            stages.abort(e);
+            throw e;
+        } finally {
+            decoder.reset();
+        }
+        return new CodecTotals(consumed, stages.bytesWritten, System.nanoTime() - start);
+    }
+
+    private Stages start(ReadableByteChannel in, WritableByteChannel out) {
+        // The last writer has exited. A reader left blocked in read() still owns its ring, so
+        // it keeps that one and this job gets a new one.
+        if (lastReader != null && lastReader.isAlive()) {
+            input = new BlockRing(depth, blockSize);
+        } else {
+            input.reset();
+        }
+        output.reset();
+        BlockRing ring = input;
+        Stages stages = new Stages();
+        stages.reader = STAGE_THREADS.newThread(() -> {
+            try {
+                while (true) {
+                    ByteBuffer block = ring.claim();
+                    int n = in.read(block);
+                    if (n < 0) {
+                        break;
+                    }
+                    stages.bytesRead += n;
+                    block.flip();
+                    ring.publish();
+                }
+                ring.close();
+            } catch (IOException | RuntimeException e) {
+                ring.fail(e);
+            }
+        });
+        stages.writer = STAGE_THREADS.newThread(() -> {
+            try {
+                ByteBuffer block;
+                while ((block = output.take()) != null) {
+                    while (block.hasRemaining()) {
+                        stages.bytesWritten += out.write(block);
+                    }
+                    output.release();
+                }
+            } catch (IOException | RuntimeException e) {
+                stages.writeFailure = e;
+                output.fail(e);
+            }
+        });
+        stages.reader.start();
+        stages.writer.start();
+        lastReader = stages.reader;
+        return stages;
+    }
+
+    //The two helper threads of one job; counters are read after join(). Every job waits for
+    //its writer, so all output is written when it returns. The reader is only waited for
+    //once it has reached the end of the input: a read in flight when a job stops early (past
+    //END_OF_STREAM, or after a failure) may never return on a pipe or socket the other end
+    //keeps open, so that reader is left to exit at its next block, and start() stops reusing
+    //its ring.
+    private final class Stages {
+        Thread reader;
+        Thread writer;
+        long bytesRead;
+        long bytesWritten;
+        Exception writeFailure;
+
+        //Only once the input ring has been drained to its close
+        void finishReading() throws IOException {
+            join(reader);
+        }
+
+        void finishWriting() throws IOException {
+            join(writer);
+            if (writeFailure != null) {
+                throw new IOException("Writing failed", writeFailure);
+            }
+        }
+
+        void abort(Exception cause) {
+            input.fail(cause);
+            output.fail(cause);
+            try {
+                join(writer);
+            } catch (InterruptedIOException e) {
+                // already failing; the interrupt stays set for the caller
+            }
+        }
+
+        private void join(Thread thread) throws InterruptedIOException {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a pipeline stage");
+            }
+        }
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    //Thread.ofVirtual().factory() where it exists
+    private static ThreadFactory stageThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method name = Class.forName("java.lang.Thread$Builder").getMethod("name", String.class, long.class);
+            builder = name.invoke(builder, "pipeline-", 0L);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return new PlatformThreads();
+        }
+    }
+
+    private static final class PlatformThreads implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable stage) {
+            Thread thread = new Thread(stage, "pipeline-stage");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
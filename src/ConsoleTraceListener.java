@@ -0,0 +1,47 @@
+package src;
+
+import java.io.PrintStream;
+
+//The step-by-step console trace Encoder and Decoder used to print unconditionally.
+//Keeps its own transcript, so use one instance per codec. The compressed stream it shows is
+//the BitWriter's debug view, which only covers bits not yet drained to a stream.
+public class ConsoleTraceListener implements CodecListener {
+    private final PrintStream out;
+    private final StringBuilder decodedMessage = new StringBuilder();
+    private int encodedCount = 0;
+    private int decodedCount = 0;
+
+    public ConsoleTraceListener() {
+        this(System.out);
+    }
+
+    public ConsoleTraceListener(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void symbolEncoded(int symbol, BitWriter output, long startBit) {
+        encodedCount++;
+        out.println("\nAfter encoding the character '" + (char) symbol + "' (character #" + encodedCount +
+                    "), the compressed stream is '" + output + "'");
+    }
+
+    @Override
+    public void symbolDecoded(int symbol) {
+        decodedCount++;
+        decodedMessage.append((char) symbol);
+        out.println("\nAfter decoding character #" + decodedCount +
+                    " ('" + (char) symbol + "'), the current decoded message is '" + decodedMessage + "'");
+    }
+
+    @Override
+    public boolean wantsSnapshots() {
+        return true;
+    }
+
+    @Override
+    public void treeSnapshot(AdaptiveCodeModel tree) {
+        out.println("The tree contains mainly the following nodes:");
+        out.println(tree);
+    }
+}
@@ -0,0 +1,192 @@
+package src;
+
+//Order-1 modeling for the byte API: each symbol is coded with an adaptive tree kept for the
+//symbol before it. A context tree's NYT means "new in this context", and the symbol then
+//follows in the shared order-0 tree, which also codes everything in contexts without a tree.
+//Only the trees that coded a symbol are updated with it, so the order-0 tree learns what tends
+//to be new in a context rather than the overall byte distribution.
+//
+//Context trees are created on first use. At most maxContexts exist at once; past that the
+//least recently used one is dropped and its context starts over. Encoder and decoder see the
+//same contexts in the same order, so they evict the same trees. A context tree costs about
+//4 KB plus 150 bytes per distinct symbol seen in it.
+public class ContextModel {
+    private static final int CONTEXTS = 256; // previous byte; END_OF_STREAM is never a context
+    private static final int NONE = -1;
+
+    private final AdaptiveCodeModel order0;
+    private final AdaptiveCodeModel.Algorithm algorithm;
+    private final RescalePolicy rescalePolicy;
+    private final int maxContexts;
+    private CodecListener listener = CodecListener.NONE;
+
+    private final AdaptiveCodeModel[] trees = new AdaptiveCodeModel[CONTEXTS];
+    // Reset trees of dropped contexts, reused before new ones are allocated
+    private final AdaptiveCodeModel[] spareTrees = new AdaptiveCodeModel[CONTEXTS];
+    private int spareCount;
+    // LRU order as a doubly linked list over context values, most recent at head
+    private final int[] newer = new int[CONTEXTS];
+    private final int[] older = new int[CONTEXTS];
+    private int head = NONE;
+    private int tail = NONE;
+    private int treeCount;
+    private int context = NONE; // the first symbol has no context
+
+    //order0 is the stream's shared byte tree; context trees use the same algorithm and policy
+    public ContextModel(AdaptiveCodeModel order0, AdaptiveCodeModel.Algorithm algorithm,
+                        RescalePolicy rescalePolicy, int maxContexts) {
+        if (maxContexts < 1) {
+            throw new IllegalArgumentException("At least one context tree is needed: " + maxContexts);
+        }
+        this.order0 = order0;
+        this.algorithm = algorithm;
+        this.rescalePolicy = rescalePolicy;
+        this.maxContexts = Math.min(maxContexts, CONTEXTS);
+    }
+
+    //Codes the symbol in its context and updates the trees that coded it
+    public void encode(int symbol, BitWriter out) {
+        char c = (char) symbol;
+        AdaptiveCodeModel tree = contextTree();
+        if (tree != null) {
+            boolean known = tree.getNodeForSymbol(c) != null;
+            tree.encode(c, out); // NYT only, when the symbol is new here
+            tree.update(c);
+            if (known) {
+                setContext(symbol);
+                return;
+            }
+        }
+        order0.encode(c, out);
+        order0.update(c);
+        advance(tree, symbol);
+    }
+
+    //Decodes the next symbol and updates the trees that coded it; -1 if the input runs out
+    public int decode(BitReader in) {
+        AdaptiveCodeModel tree = contextTree();
+        if (tree != null) {
+            Node node = tree.decode(in);
+            if (!node.isLeaf()) {
+                return -1;
+            }
+            if (!node.isNYT()) {
+                tree.update(node.getSymbol());
+                setContext(node.getSymbol());
+                return node.getSymbol();
+            }
+        }
+
+        int symbol = order0.decodeSymbol(in);
+        if (symbol < 0) {
+            return -1;
+        }
+        if (tree != null) {
+            tree.update((char) symbol);
+        }
+        advance(tree, symbol);
+        return symbol;
+    }
+
+    //Starts a new stream: the order-0 tree is reset and every context tree is kept for reuse
+    public void reset() {
+        order0.reset();
+        for (int ctx = 0; ctx < CONTEXTS; ctx++) {
+            if (trees[ctx] != null) {
+                trees[ctx].reset();
+                spareTrees[spareCount++] = trees[ctx];
+                trees[ctx] = null;
+            }
+        }
+        head = NONE;
+        tail = NONE;
+        treeCount = 0;
+        context = NONE;
+    }
+
+    public void setListener(CodecListener listener) {
+        this.listener = listener == null ? CodecListener.NONE : listener;
+        order0.setListener(this.listener);
+        for (AdaptiveCodeModel tree : trees) {
+            if (tree != null) {
+                tree.setListener(this.listener);
+            }
+        }
+        for (int i = 0; i < spareCount; i++) {
+            spareTrees[i].setListener(this.listener);
+        }
+    }
+
+    public int getContextCount() {
+        return treeCount;
+    }
+
+    //The current context's tree, marked most recently used, or null if it has none
+    private AdaptiveCodeModel contextTree() {
+        if (context == NONE || trees[context] == null) {
+            return null;
+        }
+        if (head != context) {
+            unlink(context);
+            pushHead(context);
+        }
+        return trees[context];
+    }
+
+    //After a symbol coded in order-0: a context that had no tree gets one, seeded with the symbol
+    private void advance(AdaptiveCodeModel tree, int symbol) {
+        if (tree == null && context != NONE) {
+            if (treeCount == maxContexts) {
+                int evicted = tail;
+                unlink(evicted);
+                trees[evicted].reset();
+                spareTrees[spareCount++] = trees[evicted];
+                trees[evicted] = null;
+                treeCount--;
+            }
+            AdaptiveCodeModel created;
+            if (spareCount > 0) {
+                created = spareTrees[--spareCount];
+                spareTrees[spareCount] = null;
+            } else {
+                created = algorithm.newModel(EscapeCoder.deferred(EscapeCoder.BYTE_ALPHABET_SIZE));
+                created.setRescalePolicy(rescalePolicy);
+                created.setListener(listener);
+            }
+            created.update((char) symbol);
+            trees[context] = created;
+            pushHead(context);
+            treeCount++;
+        }
+        setContext(symbol);
+    }
+
+    private void setContext(int symbol) {
+        context = symbol < CONTEXTS ? symbol : NONE; // after END_OF_STREAM, start afresh
+    }
+
+    private void pushHead(int ctx) {
+        older[ctx] = head;
+        newer[ctx] = NONE;
+        if (head != NONE) {
+            newer[head] = ctx;
+        }
+        head = ctx;
+        if (tail == NONE) {
+            tail = ctx;
+        }
+    }
+
+    private void unlink(int ctx) {
+        if (newer[ctx] != NONE) {
+            older[newer[ctx]] = older[ctx];
+        } else {
+            head = older[ctx];
+        }
+        if (older[ctx] != NONE) {
+            newer[older[ctx]] = newer[ctx];
+        } else {
+            tail = newer[ctx];
+        }
+    }
+}
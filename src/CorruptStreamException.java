@@ -0,0 +1,42 @@
+package src;
+
+import java.io.IOException;
+
+//Compressed input is damaged or ends too soon. In a framed stream (see FramedInputStream) the
+//offsets locate the bad frame: its header's position in the compressed stream and the
+//position of its first byte in the output. Unframed streams have no frames and all three are -1.
+public class CorruptStreamException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final long frameIndex;
+    private final long streamOffset;
+    private final long dataOffset;
+
+    public CorruptStreamException(String message, long frameIndex, long streamOffset, long dataOffset) {
+        super(message + " in frame " + frameIndex + " at stream offset " + streamOffset
+                + " (data offset " + dataOffset + ")");
+        this.frameIndex = frameIndex;
+        this.streamOffset = streamOffset;
+        this.dataOffset = dataOffset;
+    }
+
+    //For unframed streams: Decoder's one-shot methods
+    public CorruptStreamException(String message) {
+        super(message);
+        this.frameIndex = -1;
+        this.streamOffset = -1;
+        this.dataOffset = -1;
+    }
+
+    public long getFrameIndex() {
+        return frameIndex;
+    }
+
+    public long getStreamOffset() {
+        return streamOffset;
+    }
+
+    public long getDataOffset() {
+        return dataOffset;
+    }
+}
@@ -0,0 +1,118 @@
+package src;
+
+import java.util.Arrays;
+
+//Decoder-side lookup table for an AdaptiveCodeModel: indexed by the next TABLE_BITS input
+//bits, each entry holds the node reached from the root and how many bits that took, so short
+//codes resolve in one step. Swaps only invalidate the entries under the moved positions and stale
+//entries are recomputed on first use. When the tree churns so fast that entries are rebuilt
+//more often than they are used, the table switches itself off for a while.
+class DecodeTable {
+    static final int TABLE_BITS = 8;
+    private static final int SIZE = 1 << TABLE_BITS;
+    private static final int WINDOW = 256;          // decoded symbols per measurement
+    private static final int BACKOFF_SYMBOLS = 4096; // symbols to bit-walk after giving up
+
+    private final AdaptiveCodeModel tree;
+    private final Node[] nodes = new Node[SIZE];
+    private final byte[] lengths = new byte[SIZE];
+    private final boolean[] stale = new boolean[SIZE];
+    private boolean enabled = true;
+    private int windowSymbols;
+    private int windowCost;  // entries rebuilt plus invalidations in the current window
+    private int backoff;
+
+    DecodeTable(AdaptiveCodeModel tree) {
+        this.tree = tree;
+        Arrays.fill(stale, true);
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    //Follows up to TABLE_BITS bits in one step. Returns the node reached, which may still be
+    //internal for long codes, or null when the input ends within the table's reach.
+    Node lookup(BitReader in) {
+        int index = in.peekBits(TABLE_BITS);
+        if (stale[index]) {
+            rebuild(index);
+        }
+        int length = lengths[index];
+        if (length > in.remainingBits()) {
+            return null;
+        }
+        in.skipBits(length);
+        return nodes[index];
+    }
+
+    private void rebuild(int index) {
+        Node current = tree.getRoot();
+        int length = 0;
+        while (!current.isLeaf() && length < TABLE_BITS) {
+            int bit = (index >>> (TABLE_BITS - 1 - length)) & 1;
+            current = (bit == 0) ? current.getLeftChild() : current.getRightChild();
+            length++;
+        }
+        nodes[index] = current;
+        lengths[index] = (byte) length;
+        stale[index] = false;
+        windowCost++;
+    }
+
+    //The subtree at this node's position changed shape; drop the entries that pass through it
+    void invalidate(Node node) {
+        if (!enabled) {
+            return;
+        }
+        windowCost++;
+
+        int depth = 0;
+        int prefix = 0;
+        Node root = tree.getRoot();
+        for (Node current = node; current != root; current = current.getParent()) {
+            if (++depth > TABLE_BITS) {
+                return; // too deep to appear in any entry
+            }
+            if (current.getParent().getRightChild() == current) {
+                prefix |= 1 << (depth - 1);
+            }
+        }
+
+        int span = TABLE_BITS - depth;
+        int from = prefix << span;
+        Arrays.fill(stale, from, from + (1 << span), true);
+    }
+
+    //The whole tree was rebuilt
+    void invalidateAll() {
+        Arrays.fill(stale, true);
+        windowCost += SIZE;
+    }
+
+    //The tree went back to its initial state: forget the entries and the churn statistics
+    void reset() {
+        Arrays.fill(stale, true);
+        enabled = true;
+        windowSymbols = 0;
+        windowCost = 0;
+        backoff = 0;
+    }
+
+    //Called once per decoded symbol to decide whether the table is paying off
+    void symbolDecoded() {
+        if (enabled) {
+            if (++windowSymbols == WINDOW) {
+                if (windowCost > WINDOW) {
+                    enabled = false;
+                    backoff = BACKOFF_SYMBOLS;
+                }
+                windowSymbols = 0;
+                windowCost = 0;
+            }
+        } else if (--backoff == 0) {
+            enabled = true;
+            Arrays.fill(stale, true); // swaps weren't tracked while off
+        }
+    }
+}
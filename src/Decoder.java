@@ -1,14 +1,46 @@
 package src;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 public class Decoder {
-    private HuffmanTree tree;
+    private static final int CARRY_SIZE = 512; // room for two of the longest symbols
+    private static final int SYNC_POINT = -2;  // from decodeByte: a sync point was passed
+    private final AdaptiveCodeModel.Algorithm algorithm;
+    private AdaptiveCodeModel tree;      // String API: chars 0-255 with 8-bit literals
+    private AdaptiveCodeModel byteTree;  // byte API: 256 byte values + END_OF_STREAM
+    private final FrequencyProfile profile; // primes byteTree, or null to start empty
+    private RescalePolicy rescalePolicy = RescalePolicy.DEFAULT;
+    private int order1Contexts;             // 0: order-0 only
+    private ContextModel contextModel;      // order-1 mode, wraps byteTree
+    private CodecListener listener = CodecListener.NONE;
+    private boolean streamStarted;          // the byte stream's header is behind us
+    private boolean streamEnded;            // the last byte symbol was END_OF_STREAM
+    private boolean syncFlush;              // END_OF_STREAM is followed by a sync/end flag bit
+    private boolean awaitingFlag;           // END_OF_STREAM was read, its flag bit was not
+    private ByteBuffer carry;               // buffer API: input of a symbol split across calls
+    private int bitOffset;                  // buffer API: bits of the next input byte already used
+    private int heldSymbol = -1;            // buffer API: decoded while dst was full
     private int charCount = 0;
     
     public Decoder() {
-        tree = new HuffmanTree();
+        this(AdaptiveCodeModel.Algorithm.FGK);
+    }
+
+    //The decoder must be built with the same algorithm as the encoder was
+    public Decoder(AdaptiveCodeModel.Algorithm algorithm) {
+        this(algorithm, null);
+    }
+
+    //For streams from an Encoder primed with the same profile; see profileIdOf
+    public Decoder(AdaptiveCodeModel.Algorithm algorithm, FrequencyProfile profile) {
+        this.algorithm = algorithm;
+        this.profile = profile;
+        tree = algorithm.newModel(EscapeCoder.literal8());
     }
     
-    public String decode(String encodedBits) {
+    //Throws CorruptStreamException if the bits end inside a code or a literal
+    public String decode(String encodedBits) throws CorruptStreamException {
         StringBuilder decodedMessage = new StringBuilder();
         int[] position = new int[1]; // Using array to pass by reference
         
@@ -19,31 +51,344 @@ public class Decoder {
             
             if (node.isNYT()) {
                 // Read the next 8 bits for the ASCII character
-                if (position[0] + 8 <= encodedBits.length()) {
-                    String asciiCode = encodedBits.substring(position[0], position[0] + 8);
-                    position[0] += 8;
-                    char symbol = (char) Integer.parseInt(asciiCode, 2);
-                    decodedMessage.append(symbol);
-                    tree.update(symbol);
+                if (position[0] + 8 > encodedBits.length()) {
+                    throw new CorruptStreamException("Bits end inside the literal after NYT at bit " + position[0]);
                 }
+                String asciiCode = encodedBits.substring(position[0], position[0] + 8);
+                position[0] += 8;
+                char symbol = (char) Integer.parseInt(asciiCode, 2);
+                listener.escapeCoded(symbol);
+                decodedMessage.append(symbol);
+                tree.update(symbol);
+                symbolCoded(tree, symbol);
+            } else if (!node.isLeaf()) {
+                throw new CorruptStreamException("Bits end inside a code at bit " + position[0]);
             } else {
                 char symbol = node.getSymbol();
                 decodedMessage.append(symbol);
                 tree.update(symbol);
+                symbolCoded(tree, symbol);
             }
-            
-            charCount++;//Increment the character count each time a new symbol is decoded
-            System.out.println("\nAfter decoding character #" + charCount + 
-                              " ('" + decodedMessage.charAt(decodedMessage.length()-1) + 
-                              "'), the current decoded message is '" + decodedMessage.toString() + "'");
-            System.out.println("The tree contains mainly the following nodes:");
-            System.out.println(tree);
         }
         
         return decodedMessage.toString();
     }
     
-    public HuffmanTree getTree() {
+    //Binary entry point, the inverse of Encoder.encode(byte[]); stops at END_OF_STREAM and
+    //reads through sync points. Input that ends before END_OF_STREAM throws
+    //CorruptStreamException, as decode(String) does.
+    public byte[] decode(byte[] encoded) throws CorruptStreamException {
+        return decodeUntil(encoded, false);
+    }
+
+    //The inverse of Encoder.encodeMessage: the bytes up to the next sync point (or the end of
+    //the stream), with the trees carried over from the last message. Input after the sync
+    //point is ignored; input that ends before it throws as decode(byte[]) does.
+    public byte[] decodeMessage(byte[] encoded) throws CorruptStreamException {
+        if (!syncFlush) {
+            throw new IllegalStateException("Sync flush needs setSyncFlush(true)");
+        }
+        return decodeUntil(encoded, true);
+    }
+
+    private byte[] decodeUntil(byte[] encoded, boolean stopAtSyncPoint) throws CorruptStreamException {
+        BitReader in = new BitReader(encoded);
+        streamEnded = false;
+
+        byte[] decoded = new byte[Math.max(16, encoded.length * 2)];
+        int size = 0;
+        int symbol;
+        boolean synced = false;
+
+        while ((symbol = decodeByte(in)) != -1) {
+            if (symbol == SYNC_POINT) {
+                if (stopAtSyncPoint) {
+                    synced = true;
+                    break;
+                }
+                continue;
+            }
+            if (size == decoded.length) {
+                decoded = Arrays.copyOf(decoded, size * 2);
+            }
+            decoded[size++] = (byte) symbol;
+        }
+        if (!streamEnded && !synced) {
+            throw new CorruptStreamException("Stream ended before END_OF_STREAM, at bit "
+                    + in.getPosition() + " after " + size + " bytes");
+        }
+
+        return Arrays.copyOf(decoded, size);
+    }
+
+    //Decodes from the buffer in place (no copy) straight into dst. Stops at END_OF_STREAM or
+    //after maxLength bytes, reading through sync points, and returns the number of bytes
+    //written.
+    public int decode(ByteBuffer encoded, byte[] dst, int offset, int maxLength) {
+        BitReader in = new BitReader(encoded, (long) encoded.remaining() * 8);
+        int size = 0;
+        int symbol;
+
+        while (size < maxLength && (symbol = decodeByte(in)) != -1) {
+            if (symbol != SYNC_POINT) {
+                dst[offset + size++] = (byte) symbol;
+            }
+        }
+        return size;
+    }
+
+    //Inflater-style decoding between buffers, for non-blocking I/O. Decodes from src into dst
+    //until src is used up, dst is full or the stream ends. A symbol whose bits are not all in
+    //src yet is copied into the decoder and finished on a later call, so src is always used up
+    //unless dst fills first; then the rest is left in src for the next call, as is any input
+    //after the end of the stream. In sync-flush mode the call that passes a sync point stops
+    //right after it with FLUSHED, so the caller knows a message is complete.
+    public CodecStatus decode(ByteBuffer src, ByteBuffer dst) {
+        if (heldSymbol >= 0) {
+            if (!dst.hasRemaining()) {
+                return CodecStatus.NEEDS_OUTPUT;
+            }
+            dst.put((byte) heldSymbol);
+            heldSymbol = -1;
+        }
+        if (streamEnded) {
+            return CodecStatus.FINISHED;
+        }
+        while (carry != null && carry.hasRemaining()) {
+            int carried = carry.remaining();
+            int appended = Math.min(src.remaining(), carry.capacity() - carried);
+            carry.compact();
+            carry.put(src.slice().limit(appended));
+            carry.flip();
+            src.position(src.position() + appended);
+
+            CodecStatus status = decodeFrom(carry, dst);
+            if (carry.remaining() <= appended) {
+                // Past the carried bytes: what is left of the appended ones is still in src
+                src.position(src.position() - carry.remaining());
+                carry.position(carry.limit());
+                if (status != CodecStatus.NEEDS_INPUT) {
+                    return status;
+                }
+                break;
+            }
+            if (status != CodecStatus.NEEDS_INPUT || !src.hasRemaining()) {
+                return status;
+            }
+            carry = ByteBuffer.allocate(carry.capacity() * 2).put(carry).flip(); // a longer symbol
+        }
+
+        CodecStatus status = decodeFrom(src, dst);
+        if (status == CodecStatus.NEEDS_INPUT) {
+            if (carry == null || carry.capacity() < src.remaining()) {
+                carry = ByteBuffer.allocate(Math.max(CARRY_SIZE, src.remaining() * 2));
+            }
+            carry.clear();
+            carry.put(src);
+            carry.flip();
+        }
+        return status;
+    }
+
+    //Decodes whole symbols from buf, leaving its position (and bitOffset) after the last one.
+    //A symbol cut short by the end of buf changes nothing: trees are only updated once a
+    //symbol has been read in full.
+    private CodecStatus decodeFrom(ByteBuffer buf, ByteBuffer dst) {
+        int start = buf.position();
+        BitReader in = new BitReader(buf, (long) buf.remaining() * 8);
+        if (bitOffset > 0) {
+            in.skipBits(bitOffset);
+        }
+        long mark = in.getPosition();
+        CodecStatus status = CodecStatus.NEEDS_INPUT;
+        if (startStream(in)) {
+            while (true) {
+                mark = in.getPosition();
+                int symbol = decodeByte(in);
+                if (symbol == SYNC_POINT) {
+                    mark = in.getPosition(); // on a byte boundary
+                    status = CodecStatus.FLUSHED;
+                    break;
+                } else if (symbol >= 0 && dst.hasRemaining()) {
+                    dst.put((byte) symbol);
+                } else if (symbol >= 0) {
+                    // Held until there is room; decoding it tells a full dst from a finished stream
+                    heldSymbol = symbol;
+                    mark = in.getPosition();
+                    status = CodecStatus.NEEDS_OUTPUT;
+                    break;
+                } else {
+                    if (streamEnded) {
+                        mark = (in.getPosition() + 7) & ~7L; // the stream is padded to a byte
+                        status = CodecStatus.FINISHED;
+                    } else if (awaitingFlag) {
+                        mark = in.getPosition(); // the trees have END_OF_STREAM already
+                    }
+                    break;
+                }
+            }
+        }
+        buf.position(start + (int) (mark >>> 3));
+        bitOffset = (int) (mark & 7);
+        return status;
+    }
+
+    //The profile id in a primed stream's header, for picking the decoder's profile, or -1 if
+    //the header is cut short. Meaningless for unprimed streams, which have no header.
+    public static int profileIdOf(byte[] encoded) {
+        return FrequencyProfile.readId(new BitReader(encoded));
+    }
+
+    //Creates the trees on first use and reads a primed stream's header; false if the input
+    //ends inside the header
+    private boolean startStream(BitReader in) {
+        if (byteTree == null) {
+            byteTree = algorithm.newModel(EscapeCoder.forBytes(), profile);
+            byteTree.setListener(listener);
+            byteTree.setRescalePolicy(rescalePolicy);
+            if (order1Contexts > 0) {
+                contextModel = new ContextModel(byteTree, algorithm, rescalePolicy, order1Contexts);
+                contextModel.setListener(listener);
+            }
+        }
+        if (!streamStarted) {
+            streamEnded = false;
+            if (profile != null) {
+                int id = FrequencyProfile.readId(in);
+                if (id < 0) {
+                    return false; // truncated header
+                }
+                if (id != profile.getId()) {
+                    throw new IllegalArgumentException("Stream needs profile " + id + ", decoder has " + profile.getId());
+                }
+            }
+            streamStarted = true;
+        }
+        return true;
+    }
+
+    //Next byte value, SYNC_POINT after one, or -1 at END_OF_STREAM or when the input runs out
+    private int decodeByte(BitReader in) {
+        if (!startStream(in)) {
+            return -1;
+        }
+        if (awaitingFlag) {
+            return endOrSyncPoint(in);
+        }
+        if (!in.hasMore()) {
+            return -1;
+        }
+        if (contextModel != null) {
+            int symbol = contextModel.decode(in);
+            if (symbol < 0) {
+                return -1;
+            }
+            symbolCoded(byteTree, symbol);
+            return endOfStream(symbol, in);
+        }
+
+        int symbol = byteTree.decodeSymbol(in);
+        if (symbol < 0) {
+            return -1;
+        }
+        symbolCoded(byteTree, symbol);
+        return endOfStream(symbol, in);
+    }
+
+    private int endOfStream(int symbol, BitReader in) {
+        if (symbol != EscapeCoder.END_OF_STREAM) {
+            return symbol;
+        }
+        if (!syncFlush) {
+            streamEnded = true;
+            return -1;
+        }
+        awaitingFlag = true;
+        return endOrSyncPoint(in);
+    }
+
+    //The flag bit after END_OF_STREAM in sync-flush mode: 0 ends the stream, 1 is a sync point
+    //whose padding is skipped. -1 with awaitingFlag still set if the bit hasn't arrived.
+    private int endOrSyncPoint(BitReader in) {
+        int flag = in.readBit();
+        if (flag < 0) {
+            return -1;
+        }
+        awaitingFlag = false;
+        if (flag == 0) {
+            streamEnded = true;
+            return -1;
+        }
+        in.skipBits((int) (-in.getPosition() & 7));
+        return SYNC_POINT;
+    }
+
+    private void symbolCoded(AdaptiveCodeModel codingTree, int symbol) {
+        charCount++;//Increment the character count each time a new symbol is decoded
+        listener.symbolDecoded(symbol);
+        if (listener.wantsSnapshots()) {
+            listener.treeSnapshot(codingTree);
+        }
+    }
+
+    //Starts over as if newly constructed, keeping the settings and reusing the trees' memory.
+    //The next byte stream is expected to start with a header again.
+    public void reset() {
+        tree.reset();
+        if (contextModel != null) {
+            contextModel.reset(); // resets byteTree too
+        } else if (byteTree != null) {
+            byteTree.reset();
+        }
+        streamStarted = false;
+        streamEnded = false;
+        awaitingFlag = false;
+        if (carry != null) {
+            carry.clear().flip();
+        }
+        bitOffset = 0;
+        heldSymbol = -1;
+        charCount = 0;
+    }
+
+    //Installs a trace/metrics hook on this decoder and its trees; null restores the no-op
+    public void setListener(CodecListener listener) {
+        this.listener = listener == null ? CodecListener.NONE : listener;
+        tree.setListener(this.listener);
+        if (byteTree != null) {
+            byteTree.setListener(this.listener);
+        }
+        if (contextModel != null) {
+            contextModel.setListener(this.listener);
+        }
+    }
+
+    //Order-1 mode for the byte API, keeping at most maxContexts context trees (see
+    //ContextModel); 0 turns it off. Like the rescale policy it must match the other end and
+    //be set before coding starts.
+    public void setOrder1(int maxContexts) {
+        if (maxContexts < 0) {
+            throw new IllegalArgumentException("Negative context limit: " + maxContexts);
+        }
+        this.order1Contexts = maxContexts;
+    }
+
+    //Sync-flush mode for the byte API; see Encoder.setSyncFlush. Must match the other end and
+    //be set before coding starts.
+    public void setSyncFlush(boolean on) {
+        this.syncFlush = on;
+    }
+
+    //Must match the policy on the other end of the stream and be set before coding starts
+    public void setRescalePolicy(RescalePolicy policy) {
+        this.rescalePolicy = policy;
+        tree.setRescalePolicy(policy);
+        if (byteTree != null) {
+            byteTree.setRescalePolicy(policy);
+        }
+    }
+
+    public AdaptiveCodeModel getTree() {
         return tree;
     }
 }
\ No newline at end of file
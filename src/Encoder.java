@@ -1,38 +1,290 @@
 package src;
 
+import java.nio.ByteBuffer;
+
 public class Encoder {
-    private HuffmanTree tree;
-    private StringBuilder encodedBits;
+    private final AdaptiveCodeModel.Algorithm algorithm;
+    private AdaptiveCodeModel tree;      // String API: chars 0-255 with 8-bit literals
+    private AdaptiveCodeModel byteTree;  // byte API: 256 byte values + END_OF_STREAM
+    private final FrequencyProfile profile; // primes byteTree, or null to start empty
+    private RescalePolicy rescalePolicy = RescalePolicy.DEFAULT;
+    private int order1Contexts;             // 0: order-0 only
+    private ContextModel contextModel;      // order-1 mode, wraps byteTree
+    private CodecListener listener = CodecListener.NONE;
+    private boolean streamStarted;          // the byte stream's header is behind us
+    private BitWriter pending;              // buffer API: code bits dst had no room for yet
+    private boolean finishing;              // buffer API: finish() was called
+    private boolean finishWritten;          // buffer API: END_OF_STREAM is in pending or out
+    private boolean syncFlush;              // END_OF_STREAM is followed by a sync/end flag bit
+    private boolean flushing;               // buffer API: flush() was called
+    private boolean syncWritten;            // buffer API: a sync point is in pending or out
     private int charCount = 0;
     
     public Encoder() {
-        tree = new HuffmanTree();
-        encodedBits = new StringBuilder();
+        this(AdaptiveCodeModel.Algorithm.FGK);
+    }
+
+    //The decoder must be built with the same algorithm as the encoder was
+    public Encoder(AdaptiveCodeModel.Algorithm algorithm) {
+        this(algorithm, null);
+    }
+
+    //Byte streams start from the profile's tree and carry its id in a header. The String API
+    //is not affected.
+    public Encoder(AdaptiveCodeModel.Algorithm algorithm, FrequencyProfile profile) {
+        this.algorithm = algorithm;
+        this.profile = profile;
+        tree = algorithm.newModel(EscapeCoder.literal8());
     }
     
+    //Debug view: the compressed stream as one '0'/'1' char per bit
     public String encode(String message) {
-        encodedBits = new StringBuilder();
+        BitWriter encodedBits = new BitWriter();
         
         for (int i = 0; i < message.length(); i++) {
             char symbol = message.charAt(i);
-            String code = tree.encode(symbol);
-            encodedBits.append(code);
+            long start = encodedBits.bitLength();
+            tree.encode(symbol, encodedBits);
             charCount++;
             
             // Update the tree with this symbol
             tree.update(symbol);
-            
-            // Display the required output format
-            System.out.println("\nAfter encoding the character '" + symbol + "' (character #" + charCount + 
-                              "), the compressed stream is '" + encodedBits.toString() + "'");
-            System.out.println("The tree contains mainly the following nodes:");
-            System.out.println(tree);
+            symbolCoded(tree, symbol, encodedBits, start);
         }
         
         return encodedBits.toString();
     }
     
-    public HuffmanTree getTree() {
+    //Binary entry point over the byte alphabet: packed code bits ending with the
+    //END_OF_STREAM symbol, zero-padded to a whole byte. A primed encoder's first stream
+    //starts with the profile id.
+    public byte[] encode(byte[] data) {
+        return encode(data, 0, data.length);
+    }
+
+    public byte[] encode(byte[] data, int offset, int length) {
+        BitWriter out = new BitWriter(length + 8);
+        encodeChunk(ByteBuffer.wrap(data, offset, length), out);
+        finishStream(out);
+        return out.toByteArray();
+    }
+
+    //One message of a sync-flush stream: its code bits and a sync point, so the bytes decode
+    //in full with Decoder.decodeMessage as soon as they arrive. The tree carries over to the
+    //next message; a primed stream's first message starts with the profile id.
+    public byte[] encodeMessage(byte[] data, int offset, int length) {
+        requireSyncFlush();
+        BitWriter out = new BitWriter(length + 8);
+        encodeChunk(ByteBuffer.wrap(data, offset, length), out);
+        syncPoint(out);
+        return out.toByteArray();
+    }
+
+    //Codes src's remaining bytes onto out, starting a stream (header included) if none is
+    //open. Chunks of one stream can be any size; finishStream ends it.
+    private void encodeChunk(ByteBuffer src, BitWriter out) {
+        startStream(out);
+        while (src.hasRemaining()) {
+            encodeByte((char) (src.get() & 0xFF), out);
+        }
+    }
+
+    private void encodeByte(char symbol, BitWriter out) {
+        long start = out.bitLength();
+        if (contextModel != null) {
+            contextModel.encode(symbol, out);
+        } else {
+            byteTree.encode(symbol, out);
+            byteTree.update(symbol);
+        }
+        charCount++;
+        symbolCoded(byteTree, symbol, out, start);
+    }
+
+    //Deflater-style coding between buffers, for non-blocking I/O. Codes src into dst until
+    //src is empty or dst is full; bits that don't make a whole byte, or that dst had no room
+    //for, stay in the encoder until the next call. After finish(), the call that empties src
+    //also ends the stream, and after flush() it writes a sync point and returns FLUSHED once
+    //all of it is in dst. The output is the same as encode(byte[]) of all the input.
+    public CodecStatus encode(ByteBuffer src, ByteBuffer dst) {
+        if (pending == null) {
+            pending = new BitWriter(256);
+        }
+        while (!finishWritten) {
+            pending.drainTo(dst);
+            if (pending.bufferedBytes() > 0) {
+                return CodecStatus.NEEDS_OUTPUT;
+            }
+            if (syncWritten) {
+                syncWritten = false;
+                return CodecStatus.FLUSHED;
+            }
+            if (src.hasRemaining() && !dst.hasRemaining()) {
+                return CodecStatus.NEEDS_OUTPUT;
+            }
+            if (!src.hasRemaining()) {
+                if (finishing) {
+                    finishStream(pending);
+                    finishWritten = true;
+                    break;
+                }
+                if (!flushing) {
+                    return CodecStatus.NEEDS_INPUT;
+                }
+                syncPoint(pending);
+                flushing = false;
+                syncWritten = true;
+                continue;
+            }
+            // About as many symbols as dst can take, so pending stays small
+            startStream(pending);
+            for (int count = Math.min(src.remaining(), dst.remaining()); count > 0; count--) {
+                encodeByte((char) (src.get() & 0xFF), pending);
+            }
+        }
+        pending.drainTo(dst);
+        return pending.bufferedBytes() > 0 ? CodecStatus.NEEDS_OUTPUT : CodecStatus.FINISHED;
+    }
+
+    //No input after what has been passed to encode(ByteBuffer, ByteBuffer) and what the next
+    //call passes; that call writes END_OF_STREAM
+    public void finish() {
+        finishing = true;
+    }
+
+    //Sync-flush mode: the call to encode(ByteBuffer, ByteBuffer) that empties src also writes
+    //a sync point, so everything passed so far decodes without waiting for more input. The
+    //tree is kept; the stream goes on after it.
+    public void flush() {
+        requireSyncFlush();
+        flushing = true;
+    }
+
+    //The buffer API has written the whole stream, END_OF_STREAM and padding included
+    public boolean finished() {
+        return finishWritten && pending.bufferedBytes() == 0;
+    }
+
+    private void startStream(BitWriter out) {
+        if (byteTree == null) {
+            byteTree = algorithm.newModel(EscapeCoder.forBytes(), profile);
+            byteTree.setListener(listener);
+            byteTree.setRescalePolicy(rescalePolicy);
+            if (order1Contexts > 0) {
+                contextModel = new ContextModel(byteTree, algorithm, rescalePolicy, order1Contexts);
+                contextModel.setListener(listener);
+            }
+        }
+        if (!streamStarted) {
+            if (profile != null) {
+                FrequencyProfile.writeId(profile.getId(), out);
+            }
+            streamStarted = true;
+        }
+    }
+
+    //Writes END_OF_STREAM and pads to a whole byte
+    private void finishStream(BitWriter out) {
+        endSymbol(out);
+        if (syncFlush) {
+            out.writeBits(0, 1); // the end, not a sync point
+        }
+        out.alignToByte();
+    }
+
+    //END_OF_STREAM, a 1 bit and padding to a whole byte: the decoder has every symbol before
+    //it, and the next one starts on a byte boundary with the trees as they are
+    private void syncPoint(BitWriter out) {
+        endSymbol(out);
+        out.writeBits(1, 1);
+        out.alignToByte();
+    }
+
+    private void endSymbol(BitWriter out) {
+        startStream(out); // an empty stream still gets its header
+        long start = out.bitLength();
+        if (contextModel != null) {
+            contextModel.encode(EscapeCoder.END_OF_STREAM, out);
+        } else {
+            byteTree.encode((char) EscapeCoder.END_OF_STREAM, out);
+            byteTree.update((char) EscapeCoder.END_OF_STREAM);
+        }
+        symbolCoded(byteTree, EscapeCoder.END_OF_STREAM, out, start);
+    }
+
+    private void requireSyncFlush() {
+        if (!syncFlush) {
+            throw new IllegalStateException("Sync flush needs setSyncFlush(true)");
+        }
+    }
+
+    private void symbolCoded(AdaptiveCodeModel codingTree, int symbol, BitWriter out, long start) {
+        listener.symbolEncoded(symbol, out, start);
+        if (listener.wantsSnapshots()) {
+            listener.treeSnapshot(codingTree);
+        }
+    }
+
+    //Starts over as if newly constructed, keeping the settings and reusing the trees' memory.
+    //The next byte stream gets a header again, so a SessionPool can hand this encoder out.
+    public void reset() {
+        tree.reset();
+        if (contextModel != null) {
+            contextModel.reset(); // resets byteTree too
+        } else if (byteTree != null) {
+            byteTree.reset();
+        }
+        streamStarted = false;
+        if (pending != null) {
+            pending.clear();
+        }
+        finishing = false;
+        finishWritten = false;
+        flushing = false;
+        syncWritten = false;
+        charCount = 0;
+    }
+
+    //Installs a trace/metrics hook on this encoder and its trees; null restores the no-op
+    public void setListener(CodecListener listener) {
+        this.listener = listener == null ? CodecListener.NONE : listener;
+        tree.setListener(this.listener);
+        if (byteTree != null) {
+            byteTree.setListener(this.listener);
+        }
+        if (contextModel != null) {
+            contextModel.setListener(this.listener);
+        }
+    }
+
+    //Order-1 mode for the byte API, keeping at most maxContexts context trees (see
+    //ContextModel); 0 turns it off. Like the rescale policy it must match the other end and
+    //be set before coding starts.
+    public void setOrder1(int maxContexts) {
+        if (maxContexts < 0) {
+            throw new IllegalArgumentException("Negative context limit: " + maxContexts);
+        }
+        this.order1Contexts = maxContexts;
+    }
+
+    //Sync-flush mode for the byte API, so one stream can carry many messages over one tree
+    //(see flush and encodeMessage): every END_OF_STREAM is followed by a bit telling a sync
+    //point from the end. Like the rescale policy it must match the other end and be set
+    //before coding starts.
+    public void setSyncFlush(boolean on) {
+        this.syncFlush = on;
+    }
+
+    //Must match the policy on the other end of the stream and be set before coding starts
+    public void setRescalePolicy(RescalePolicy policy) {
+        this.rescalePolicy = policy;
+        tree.setRescalePolicy(policy);
+        if (byteTree != null) {
+            byteTree.setRescalePolicy(policy);
+        }
+    }
+
+    public AdaptiveCodeModel getTree() {
         return tree;
     }
 }
\ No newline at end of file
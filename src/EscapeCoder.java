@@ -0,0 +1,148 @@
+package src;
+
+//Codes the symbol that follows an NYT code. The legacy form spends a flat 8 bits. The compact
+//form sends the symbol's rank among the still-unseen symbols in truncated binary, so it costs
+//about log2(unseen) bits and drops to zero bits once a single symbol is left. The deferred form
+//writes nothing: the caller codes the symbol some other way, as ContextModel does.
+public class EscapeCoder {
+    public static final int END_OF_STREAM = 256;
+    public static final int BYTE_ALPHABET_SIZE = 257; // 256 byte values + END_OF_STREAM
+
+    private final int alphabetSize;
+    private final boolean compact;
+    private final boolean deferred;
+    private final int[] unseenTree; // Fenwick tree over "still unseen" flags, 1-based
+    private int unseenCount;
+
+    private EscapeCoder(int alphabetSize, boolean compact, boolean deferred) {
+        this.alphabetSize = alphabetSize;
+        this.compact = compact;
+        this.deferred = deferred;
+        this.unseenTree = compact ? new int[alphabetSize + 1] : null;
+        reset();
+    }
+
+    //The original scheme: any char 0-255 as an 8-bit literal
+    public static EscapeCoder literal8() {
+        return new EscapeCoder(256, false, false);
+    }
+
+    public static EscapeCoder compact(int alphabetSize) {
+        return new EscapeCoder(alphabetSize, true, false);
+    }
+
+    //Binary-safe byte alphabet with END_OF_STREAM
+    public static EscapeCoder forBytes() {
+        return compact(BYTE_ALPHABET_SIZE);
+    }
+
+    //NYT alone signals a new symbol; nothing follows it in the stream and read() is unused
+    public static EscapeCoder deferred(int alphabetSize) {
+        return new EscapeCoder(alphabetSize, false, true);
+    }
+
+    public int getAlphabetSize() {
+        return alphabetSize;
+    }
+
+    public int getUnseenCount() {
+        return unseenCount;
+    }
+
+    public void reset() {
+        unseenCount = alphabetSize;
+        if (compact) {
+            // Every flag starts at 1: node i covers (i - lowbit(i), i]
+            for (int i = 1; i <= alphabetSize; i++) {
+                unseenTree[i] = i & -i;
+            }
+        }
+    }
+
+    public void checkSymbol(int symbol) {
+        if (symbol < 0 || symbol >= alphabetSize) {
+            throw new IllegalArgumentException("Symbol " + symbol + " outside alphabet of " + alphabetSize);
+        }
+    }
+
+    public void markSeen(int symbol) {
+        unseenCount--;
+        if (compact) {
+            for (int i = symbol + 1; i <= alphabetSize; i += i & -i) {
+                unseenTree[i]--;
+            }
+        }
+    }
+
+    public void write(int symbol, BitWriter out) {
+        if (deferred) {
+            return;
+        }
+        if (!compact) {
+            out.writeBits(symbol, 8);
+            return;
+        }
+        int rank = 0; // unseen symbols below this one
+        for (int i = symbol; i > 0; i -= i & -i) {
+            rank += unseenTree[i];
+        }
+        writeTruncated(rank, unseenCount, out);
+    }
+
+    //Returns the escaped symbol, or -1 if the input ends first
+    public int read(BitReader in) {
+        if (deferred) {
+            return -1;
+        }
+        if (!compact) {
+            return in.readBits(8);
+        }
+        if (unseenCount == 0) {
+            return -1; // NYT can't be followed by anything once the alphabet is exhausted
+        }
+        int rank = readTruncated(unseenCount, in);
+        return rank < 0 ? -1 : selectUnseen(rank);
+    }
+
+    //Truncated binary code for value in [0, range)
+    private static void writeTruncated(int value, int range, BitWriter out) {
+        int k = 31 - Integer.numberOfLeadingZeros(range);
+        int shortCodes = (1 << (k + 1)) - range;
+        if (value < shortCodes) {
+            out.writeBits(value, k);
+        } else {
+            out.writeBits(value + shortCodes, k + 1);
+        }
+    }
+
+    private static int readTruncated(int range, BitReader in) {
+        int k = 31 - Integer.numberOfLeadingZeros(range);
+        int shortCodes = (1 << (k + 1)) - range;
+        int value = in.readBits(k);
+        if (value < 0) {
+            return -1;
+        }
+        if (value < shortCodes) {
+            return value;
+        }
+        int bit = in.readBit();
+        if (bit < 0) {
+            return -1;
+        }
+        return ((value << 1) | bit) - shortCodes;
+    }
+
+    //Finds the unseen symbol with the given rank by descending the Fenwick tree
+    private int selectUnseen(int rank) {
+        int index = 0;
+        int remaining = rank;
+        for (int step = Integer.highestOneBit(alphabetSize); step > 0; step >>= 1) {
+            int next = index + step;
+            if (next <= alphabetSize && unseenTree[next] <= remaining) {
+                index = next;
+                remaining -= unseenTree[next];
+            }
+        }
+        return index; // prefix sum up to index is rank, so position index + 1 is the symbol
+    }
+}
@@ -0,0 +1,207 @@
+package src;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+//Reads a FramedOutputStream stream one frame at a time. A frame's bytes are only handed out
+//once the whole frame has decoded cleanly and its CRC32C matches, so damaged input stops the
+//reader at the first bad frame, after one frame of work, with a CorruptStreamException saying
+//where. Nothing past that frame is read or decoded.
+public class FramedInputStream extends FilterInputStream {
+    // Longest code in a 257-symbol context tree and in the order-0 tree, plus an escape, in
+    // bytes, rounded up
+    private static final int MAX_BYTES_PER_SYMBOL = 72;
+
+    private final DataInputStream data;
+    private final Decoder decoder;
+    private final CRC32C crc = new CRC32C();
+    private byte[] frame;         // decoded bytes of the current frame
+    private byte[] payload = new byte[0];
+    private int frameLength;
+    private int framePosition;
+    private int frameSize;        // from the stream header; 0 until it is read
+    private long frameIndex;
+    private long streamOffset;    // compressed bytes consumed
+    private long dataOffset;      // raw bytes decoded before the current frame
+    private boolean finished;
+    private CorruptStreamException failure; // thrown again by every later read
+
+    public FramedInputStream(InputStream in) {
+        this(in, AdaptiveCodeModel.Algorithm.FGK);
+    }
+
+    public FramedInputStream(InputStream in, AdaptiveCodeModel.Algorithm algorithm) {
+        this(in, new Decoder(algorithm));
+    }
+
+    //Decodes with the decoder, as configured, after turning on its sync-flush mode; it needs
+    //the algorithm and settings the writer's Encoder had
+    public FramedInputStream(InputStream in, Decoder decoder) {
+        super(in);
+        this.data = new DataInputStream(in);
+        this.decoder = decoder;
+        decoder.setSyncFlush(true);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (framePosition == frameLength && !nextFrame()) {
+            return -1;
+        }
+        return frame[framePosition++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (framePosition == frameLength && !nextFrame()) {
+            return -1;
+        }
+        int count = Math.min(len, frameLength - framePosition);
+        System.arraycopy(frame, framePosition, b, off, count);
+        framePosition += count;
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && (framePosition < frameLength || nextFrame())) {
+            int count = (int) Math.min(n - skipped, frameLength - framePosition);
+            framePosition += count;
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return frameLength - framePosition;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    //Reads, decodes and checks the next frame; false at the end marker
+    private boolean nextFrame() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        if (finished) {
+            return false;
+        }
+        if (frameSize == 0) {
+            readStreamHeader();
+        }
+        dataOffset += frameLength;
+        frameLength = 0;
+        framePosition = 0;
+        long headerOffset = streamOffset;
+
+        int rawLength = readInt(headerOffset);
+        if (rawLength == 0) {
+            long total;
+            try {
+                total = data.readLong();
+            } catch (EOFException e) {
+                throw corrupt("Stream ends inside the end marker", headerOffset);
+            }
+            if (total != dataOffset) {
+                throw corrupt("End marker after " + total + " bytes", headerOffset);
+            }
+            streamOffset += 8;
+            finished = true;
+            return false;
+        }
+        int compressedLength = readInt(headerOffset);
+        int expectedCrc = readInt(headerOffset);
+        if (rawLength < 0 || rawLength > frameSize) {
+            throw corrupt("Raw length " + rawLength + " out of range", headerOffset);
+        }
+        // The sync point, and a profile id in the first frame, take one more symbol's room at most
+        if (compressedLength < 1 || compressedLength > (rawLength + 1L) * MAX_BYTES_PER_SYMBOL) {
+            throw corrupt("Compressed length " + compressedLength + " out of range", headerOffset);
+        }
+        int got;
+        if (payload.length >= compressedLength) {
+            got = data.readNBytes(payload, 0, compressedLength);
+        } else {
+            // Grows with what actually arrives, so a damaged length can't force a huge allocation
+            payload = data.readNBytes(compressedLength);
+            got = payload.length;
+        }
+        streamOffset += got;
+        if (got < compressedLength) {
+            throw corrupt("Stream ends " + (compressedLength - got) + " bytes into the frame's code", headerOffset);
+        }
+
+        ByteBuffer code = ByteBuffer.wrap(payload, 0, compressedLength);
+        ByteBuffer decoded = ByteBuffer.wrap(frame, 0, rawLength);
+        CodecStatus status = decoder.decode(code, decoded);
+        if (status == CodecStatus.NEEDS_OUTPUT) {
+            throw corrupt("More than " + rawLength + " bytes in the frame's code", headerOffset);
+        }
+        if (status != CodecStatus.FLUSHED) {
+            throw corrupt("No sync point at the end of the frame's code", headerOffset);
+        }
+        if (decoded.hasRemaining()) {
+            throw corrupt("Sync point after " + decoded.position() + " of " + rawLength + " bytes", headerOffset);
+        }
+        if (code.hasRemaining()) {
+            throw corrupt(code.remaining() + " unused bytes after the sync point", headerOffset);
+        }
+        crc.reset();
+        crc.update(frame, 0, rawLength);
+        if ((int) crc.getValue() != expectedCrc) {
+            throw corrupt("CRC32C mismatch", headerOffset);
+        }
+        frameLength = rawLength;
+        frameIndex++;
+        return true;
+    }
+
+    private void readStreamHeader() throws IOException {
+        int magic = readInt(0);
+        int size = readInt(0);
+        if (magic != FramedOutputStream.MAGIC) {
+            throw corrupt("Not a framed stream", 0);
+        }
+        if (size < 1 || size > FramedOutputStream.MAX_FRAME_SIZE) {
+            throw corrupt("Frame size " + size + " out of range", 0);
+        }
+        frameSize = size;
+        frame = new byte[size];
+    }
+
+    private int readInt(long headerOffset) throws IOException {
+        try {
+            int value = data.readInt();
+            streamOffset += 4;
+            return value;
+        } catch (EOFException e) {
+            CorruptStreamException corrupt = corrupt("Stream ends inside a frame header", headerOffset);
+            corrupt.initCause(e);
+            throw corrupt;
+        }
+    }
+
+    private CorruptStreamException corrupt(String message, long headerOffset) {
+        frameLength = 0;
+        framePosition = 0;
+        failure = new CorruptStreamException(message, frameIndex, headerOffset, dataOffset);
+        return failure;
+    }
+
+    public Decoder getDecoder() {
+        return decoder;
+    }
+}
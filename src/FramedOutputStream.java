@@ -0,0 +1,150 @@
+package src;
+
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+//Compresses what is written to it into checksummed frames, so a reader can reject damage
+//one frame at a time (see FramedInputStream). The frames are one sync-flush stream of an
+//Encoder, cut at its sync points: the tree keeps learning across frames, each frame's code
+//ends on a byte, and profiles, order-1 contexts and rescale policies work as they do in any
+//byte stream. The CRC32C of a frame's raw bytes is updated as they are coded, without a
+//second pass.
+//
+//Layout (big-endian): "AHF1" magic, int frameSize (the largest raw frame), then per frame:
+//int rawLength, int compressedLength, int CRC32C of the raw bytes, the code up to and
+//including its sync point (a primed stream's first frame starts with the profile id); end
+//marker: int 0, long total raw length (so a damaged rawLength can't pass for the end).
+public class FramedOutputStream extends FilterOutputStream {
+    public static final int DEFAULT_FRAME_SIZE = 1 << 16;
+    static final int MAGIC = 0x41484631; // "AHF1"
+    static final int MAX_FRAME_SIZE = 1 << 24;
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final Encoder encoder;
+    private ByteBuffer code;  // the open frame's code so far
+    private final CRC32C crc = new CRC32C();
+    private final DataOutputStream header;
+    private final int frameSize;
+    private int frameBytes;   // raw bytes in the open frame
+    private long totalBytes;  // raw bytes in finished frames
+    private boolean started;  // the stream header is out
+    private boolean finished;
+
+    public FramedOutputStream(OutputStream out) {
+        this(out, DEFAULT_FRAME_SIZE, AdaptiveCodeModel.Algorithm.FGK);
+    }
+
+    //The reader must use the same algorithm
+    public FramedOutputStream(OutputStream out, int frameSize, AdaptiveCodeModel.Algorithm algorithm) {
+        this(out, frameSize, new Encoder(algorithm));
+    }
+
+    //Codes with the encoder, as configured, after turning on its sync-flush mode. It must not
+    //have started a byte stream; the reader's Decoder needs the same algorithm and settings.
+    public FramedOutputStream(OutputStream out, int frameSize, Encoder encoder) {
+        super(out);
+        if (frameSize < 1 || frameSize > MAX_FRAME_SIZE) {
+            throw new IllegalArgumentException("Frame size must be in [1, " + MAX_FRAME_SIZE + "]: " + frameSize);
+        }
+        this.frameSize = frameSize;
+        this.encoder = encoder;
+        encoder.setSyncFlush(true);
+        this.code = ByteBuffer.allocate(Math.min(frameSize, DEFAULT_FRAME_SIZE) + 64);
+        this.header = new DataOutputStream(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (finished) {
+            throw new IOException("Stream already finished");
+        }
+        while (len > 0) {
+            int chunk = Math.min(len, frameSize - frameBytes);
+            crc.update(b, off, chunk);
+            encode(ByteBuffer.wrap(b, off, chunk));
+            frameBytes += chunk;
+            off += chunk;
+            len -= chunk;
+            if (frameBytes == frameSize) {
+                endFrame();
+            }
+        }
+    }
+
+    //Ends the open frame, so everything written so far can be read back, and flushes. The
+    //tree is kept; a flush costs a frame header and a sync point.
+    @Override
+    public void flush() throws IOException {
+        if (!finished) {
+            endFrame();
+        }
+        out.flush();
+    }
+
+    //Writes the last frame and the end marker without closing the underlying stream
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        endFrame();
+        startStream();
+        header.writeInt(0);
+        header.writeLong(totalBytes);
+        header.flush();
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void startStream() throws IOException {
+        if (!started) {
+            header.writeInt(MAGIC);
+            header.writeInt(frameSize);
+            started = true;
+        }
+    }
+
+    private void endFrame() throws IOException {
+        if (frameBytes == 0) {
+            return;
+        }
+        startStream();
+        encoder.flush();
+        encode(EMPTY);
+        header.writeInt(frameBytes);
+        header.writeInt(code.position());
+        header.writeInt((int) crc.getValue());
+        out.write(code.array(), 0, code.position());
+        code.clear();
+        crc.reset();
+        totalBytes += frameBytes;
+        frameBytes = 0;
+    }
+
+    //Codes all of src onto the open frame, growing its buffer as needed
+    private void encode(ByteBuffer src) {
+        while (encoder.encode(src, code) == CodecStatus.NEEDS_OUTPUT) {
+            code = ByteBuffer.allocate(code.capacity() * 2).put(code.flip());
+        }
+    }
+
+    public Encoder getEncoder() {
+        return encoder;
+    }
+}
@@ -0,0 +1,141 @@
+package src;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+//Symbol counts trained from sample messages, used to start both ends of a stream from the same
+//primed tree instead of an empty one. Short messages then skip most of their NYT escapes.
+//The id travels in the stream header so a decoder can tell which profile a stream needs.
+//
+//File layout (big-endian): "AHP1" magic, int id, int alphabetSize, one int count per symbol
+public class FrequencyProfile {
+    static final int MAGIC = 0x41485031; // "AHP1"
+    public static final int DEFAULT_TOTAL = 4096;
+
+    private final int id;
+    private final int[] counts;
+
+    public FrequencyProfile(int id, int[] counts) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Profile id must not be negative: " + id);
+        }
+        for (int count : counts) {
+            if (count < 0) {
+                throw new IllegalArgumentException("Negative count in profile " + id);
+            }
+        }
+        this.id = id;
+        this.counts = counts.clone();
+    }
+
+    //Counts every byte of every sample plus one END_OF_STREAM per sample, then scales the
+    //counts down to about maxTotal. Primed weights set how slowly the tree drifts away from
+    //the profile, so a smaller total adapts faster to messages unlike the samples.
+    public static FrequencyProfile train(int id, Iterable<byte[]> samples, int maxTotal) {
+        long[] raw = new long[EscapeCoder.BYTE_ALPHABET_SIZE];
+        long total = 0;
+        for (byte[] sample : samples) {
+            for (byte b : sample) {
+                raw[b & 0xFF]++;
+            }
+            raw[EscapeCoder.END_OF_STREAM]++;
+            total += sample.length + 1;
+        }
+
+        int[] counts = new int[raw.length];
+        for (int symbol = 0; symbol < raw.length; symbol++) {
+            if (raw[symbol] > 0) {
+                // Anything seen keeps a count of at least 1, so it never costs an escape
+                counts[symbol] = (int) Math.max(1, raw[symbol] * maxTotal / Math.max(total, maxTotal));
+            }
+        }
+        return new FrequencyProfile(id, counts);
+    }
+
+    public static FrequencyProfile read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a frequency profile");
+        }
+        int id = data.readInt();
+        int alphabetSize = data.readInt();
+        if (id < 0 || alphabetSize <= 0 || alphabetSize > Character.MAX_VALUE) {
+            throw new IOException("Corrupt profile header");
+        }
+        int[] counts = new int[alphabetSize];
+        for (int symbol = 0; symbol < alphabetSize; symbol++) {
+            counts[symbol] = data.readInt();
+            if (counts[symbol] < 0) {
+                throw new IOException("Corrupt count for symbol " + symbol);
+            }
+        }
+        return new FrequencyProfile(id, counts);
+    }
+
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(id);
+        data.writeInt(counts.length);
+        for (int count : counts) {
+            data.writeInt(count);
+        }
+        data.flush();
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getAlphabetSize() {
+        return counts.length;
+    }
+
+    public int getCount(int symbol) {
+        return counts[symbol];
+    }
+
+    //Stream header of a primed stream: the id as an unsigned varint, 7 bits per byte,
+    //most significant group first
+    static void writeId(int id, BitWriter out) {
+        for (int shift = (31 - Integer.numberOfLeadingZeros(id | 1)) / 7 * 7; shift > 0; shift -= 7) {
+            out.writeBits(0x80 | (id >>> shift) & 0x7F, 8);
+        }
+        out.writeBits(id & 0x7F, 8);
+    }
+
+    //Returns the id from a stream header, or -1 if the input ends first or the id is malformed
+    static int readId(BitReader in) {
+        int id = 0;
+        for (int i = 0; i < 5; i++) {
+            int group = in.readBits(8);
+            if (group < 0) {
+                return -1;
+            }
+            id = (id << 7) | (group & 0x7F);
+            if (group < 0x80) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    //The static Huffman tree for the counts, with NYT as a weight-0 leaf; see StaticTreeBuilder
+    Node buildTree(Node nytNode, SpareNodes spare, int rootNumber, boolean vitter) {
+        List<Node> leaves = new ArrayList<>();
+        leaves.add(nytNode);
+        for (int symbol = 0; symbol < counts.length; symbol++) {
+            if (counts[symbol] > 0) {
+                leaves.add(spare.take((char) symbol, counts[symbol], 0));
+            }
+        }
+        // Stable sort: equal counts stay in symbol order, so both ends build the same tree
+        leaves.subList(1, leaves.size()).sort((a, b) -> Integer.compare(a.getWeight(), b.getWeight()));
+        return StaticTreeBuilder.build(leaves, spare, rootNumber, vitter);
+    }
+}
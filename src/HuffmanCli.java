@@ -0,0 +1,303 @@
+package src;
+
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+//Headless file compressor. Files go through FileChannels and a fixed set of direct buffers,
+//so memory use doesn't depend on the file size; "-" (or a missing name) means stdin/stdout.
+//The output has the Encoder.encode(byte[]) layout. Statistics go to stderr.
+//
+//  java -jar adaptive-huffman-core.jar compress   [options] [in|-] [out|-]
+//  java -jar adaptive-huffman-core.jar decompress [options] [in|-] [out|-]
+//  java -jar adaptive-huffman-core.jar bench      [options] <file>...
+//
+//Options, which decompress must repeat: --vitter, --order1=N (context trees),
+//--profile=<file> (see ProfileTrainer). --pipeline reads and writes on their own threads
+//(see CompressionPipeline); the output is the same.
+public class HuffmanCli {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final AdaptiveCodeModel.Algorithm algorithm;
+    private final int order1Contexts;
+    private final FrequencyProfile profile;
+    private final Encoder encoder;
+    private final Decoder decoder;
+    private final ByteBuffer inBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer outBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    //profile may be null
+    public HuffmanCli(AdaptiveCodeModel.Algorithm algorithm, int order1Contexts, FrequencyProfile profile) {
+        this.algorithm = algorithm;
+        this.order1Contexts = order1Contexts;
+        this.profile = profile;
+        encoder = new Encoder(algorithm, profile);
+        encoder.setOrder1(order1Contexts);
+        decoder = new Decoder(algorithm, profile);
+        decoder.setOrder1(order1Contexts);
+    }
+
+    public static void main(String[] args) {
+        try {
+            System.exit(run(args));
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    static int run(String[] args) throws IOException {
+        AdaptiveCodeModel.Algorithm algorithm = AdaptiveCodeModel.Algorithm.FGK;
+        int order1Contexts = 0;
+        FrequencyProfile profile = null;
+        boolean pipeline = false;
+        List<String> operands = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--vitter")) {
+                algorithm = AdaptiveCodeModel.Algorithm.VITTER;
+            } else if (arg.equals("--pipeline")) {
+                pipeline = true;
+            } else if (arg.startsWith("--order1=")) {
+                order1Contexts = parseCount(arg.substring("--order1=".length()));
+                if (order1Contexts < 0) {
+                    System.err.println("--order1 takes a context count of 0 or more: " + arg);
+                    return usage();
+                }
+            } else if (arg.startsWith("--profile=")) {
+                try (InputStream in = Files.newInputStream(Path.of(arg.substring("--profile=".length())))) {
+                    profile = FrequencyProfile.read(in);
+                }
+            } else if (arg.startsWith("--")) {
+                return usage();
+            } else {
+                operands.add(arg);
+            }
+        }
+        if (operands.isEmpty()) {
+            return usage();
+        }
+
+        HuffmanCli cli = new HuffmanCli(algorithm, order1Contexts, profile);
+        String command = operands.remove(0);
+        switch (command) {
+            case "compress":
+            case "decompress": {
+                if (operands.size() > 2) {
+                    return usage();
+                }
+                boolean compress = command.equals("compress");
+                try (FileChannel in = openInput(operands.size() > 0 ? operands.get(0) : "-");
+                     FileChannel out = openOutput(operands.size() > 1 ? operands.get(1) : "-")) {
+                    CodecTotals totals;
+                    if (pipeline) {
+                        CompressionPipeline stages = new CompressionPipeline(algorithm, order1Contexts, profile);
+                        totals = compress ? stages.compress(in, out) : stages.decompress(in, out);
+                    } else {
+                        totals = compress ? cli.compress(in, out) : cli.decompress(in, out);
+                    }
+                    long raw = compress ? totals.bytesIn : totals.bytesOut;
+                    long packed = compress ? totals.bytesOut : totals.bytesIn;
+                    System.err.printf("%s %d -> %d bytes, ratio %.3f (%.3f bits/byte), %.1f MB/s%n",
+                            compress ? "Compressed" : "Decompressed", totals.bytesIn, totals.bytesOut,
+                            ratio(packed, raw), bitsPerByte(packed, raw), totals.megabytesPerSecond(raw));
+                }
+                return 0;
+            }
+            case "bench":
+                if (operands.isEmpty()) {
+                    return usage();
+                }
+                for (String file : operands) {
+                    cli.bench(Path.of(file));
+                }
+                return 0;
+            default:
+                return usage();
+        }
+    }
+
+    //A non-negative decimal int, or -1
+    private static int parseCount(String value) {
+        try {
+            return Math.max(-1, Integer.parseInt(value));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int usage() {
+        System.err.println("Usage: HuffmanCli compress|decompress [--vitter] [--order1=N] [--profile=<file>] [--pipeline] [in|-] [out|-]");
+        System.err.println("       HuffmanCli bench [--vitter] [--order1=N] [--profile=<file>] <file>...");
+        return 2;
+    }
+
+    //Reads in to its end and writes one compressed stream to out
+    public CodecTotals compress(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        long start = System.nanoTime();
+        long bytesIn = 0;
+        long bytesOut = 0;
+        outBuffer.clear();
+        CodecStatus status;
+        try {
+            do {
+                inBuffer.clear();
+                int n = in.read(inBuffer);
+                if (n < 0) {
+                    encoder.finish();
+                } else {
+                    bytesIn += n;
+                }
+                inBuffer.flip();
+                while ((status = encoder.encode(inBuffer, outBuffer)) == CodecStatus.NEEDS_OUTPUT) {
+                    bytesOut += flush(out);
+                }
+            } while (status != CodecStatus.FINISHED);
+            bytesOut += flush(out);
+        } finally {
+            encoder.reset();
+        }
+        return new CodecTotals(bytesIn, bytesOut, System.nanoTime() - start);
+    }
+
+    //Decodes one compressed stream from in; input after END_OF_STREAM is ignored
+    public CodecTotals decompress(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        long start = System.nanoTime();
+        long bytesIn = 0;
+        long bytesOut = 0;
+        inBuffer.clear().flip(); // empty, in read mode
+        outBuffer.clear();
+        CodecStatus status = CodecStatus.NEEDS_INPUT;
+        try {
+            while (status != CodecStatus.FINISHED) {
+                if (status == CodecStatus.NEEDS_INPUT) {
+                    inBuffer.compact();
+                    int n = in.read(inBuffer);
+                    inBuffer.flip();
+                    if (n < 0) {
+                        throw new EOFException("Stream ended before END_OF_STREAM");
+                    }
+                    bytesIn += n;
+                }
+                status = decoder.decode(inBuffer, outBuffer);
+                if (status == CodecStatus.NEEDS_OUTPUT) {
+                    bytesOut += flush(out);
+                }
+            }
+            bytesOut += flush(out);
+        } finally {
+            decoder.reset();
+        }
+        return new CodecTotals(bytesIn - inBuffer.remaining(), bytesOut, System.nanoTime() - start);
+    }
+
+    //Compresses the file to a temporary file and back, checking the round trip by CRC32C
+    public void bench(Path file) throws IOException {
+        Path packed = Files.createTempFile("huffman-bench", ".ahz");
+        try {
+            CodecTotals compressed;
+            try (FileChannel in = FileChannel.open(file);
+                 FileChannel out = FileChannel.open(packed, StandardOpenOption.WRITE)) {
+                compressed = compress(in, out);
+            }
+            CodecTotals decompressed;
+            CrcChannel check = new CrcChannel();
+            try (FileChannel in = FileChannel.open(packed)) {
+                decompressed = decompress(in, check);
+            }
+            CrcChannel original = new CrcChannel();
+            try (FileChannel in = FileChannel.open(file)) {
+                inBuffer.clear();
+                while (in.read(inBuffer) >= 0) {
+                    inBuffer.flip();
+                    original.write(inBuffer);
+                    inBuffer.clear();
+                }
+            }
+            boolean ok = check.crc.getValue() == original.crc.getValue() && check.bytes == original.bytes;
+            System.out.printf("%s [%s%s]: %d -> %d bytes, ratio %.3f (%.3f bits/byte), "
+                            + "compress %.1f MB/s, decompress %.1f MB/s, round trip %s%n",
+                    file, algorithm, order1Contexts > 0 ? ", order-1" : "", compressed.bytesIn,
+                    compressed.bytesOut, ratio(compressed.bytesOut, compressed.bytesIn),
+                    bitsPerByte(compressed.bytesOut, compressed.bytesIn),
+                    compressed.megabytesPerSecond(compressed.bytesIn),
+                    decompressed.megabytesPerSecond(decompressed.bytesOut), ok ? "OK" : "FAILED");
+        } finally {
+            Files.delete(packed);
+        }
+    }
+
+    //Writes out what outBuffer holds and empties it
+    private long flush(WritableByteChannel out) throws IOException {
+        outBuffer.flip();
+        int written = writeFully(outBuffer, out);
+        outBuffer.clear();
+        return written;
+    }
+
+    private static int writeFully(ByteBuffer buffer, WritableByteChannel out) throws IOException {
+        int count = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        return count;
+    }
+
+    private static FileChannel openInput(String name) throws IOException {
+        if (name.equals("-")) {
+            return new FileInputStream(FileDescriptor.in).getChannel();
+        }
+        return FileChannel.open(Path.of(name));
+    }
+
+    private static FileChannel openOutput(String name) throws IOException {
+        if (name.equals("-")) {
+            return new FileOutputStream(FileDescriptor.out).getChannel();
+        }
+        return FileChannel.open(Path.of(name), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private static double ratio(long packed, long raw) {
+        return raw == 0 ? 0 : (double) packed / raw;
+    }
+
+    private static double bitsPerByte(long packed, long raw) {
+        return raw == 0 ? 0 : packed * 8.0 / raw;
+    }
+
+    //Discards what is written, keeping a checksum and a count
+    private static final class CrcChannel implements WritableByteChannel {
+        final CRC32C crc = new CRC32C();
+        long bytes;
+
+        @Override
+        public int write(ByteBuffer src) {
+            int count = src.remaining();
+            crc.update(src);
+            bytes += count;
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package src;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+//Multi-lane format for one block: byte i goes to lane i % lanes, and every lane has its own
+//adaptive tree and bitstream. A single decoder thread then steps all lanes once per loop
+//iteration; their tree walks don't depend on each other, so the CPU overlaps their loads and
+//branches instead of waiting on one walk at a time. Each lane learns only its share of the
+//block, which costs a little compression on short blocks.
+//
+//Block layout: (lanes - 1) big-endian ints giving the byte length of every lane but the
+//last, then the lanes one after the other, each padded to a whole byte. Lanes carry no
+//END_OF_STREAM; the caller stores the block's raw length.
+public class LaneCodec {
+    public static final int DEFAULT_LANES = 4;
+    static final int MAX_LANES = 64;
+
+    private final AdaptiveCodeModel.Algorithm algorithm;
+    private final int lanes;
+
+    public LaneCodec(AdaptiveCodeModel.Algorithm algorithm, int lanes) {
+        this.algorithm = algorithm;
+        this.lanes = requireLaneCount(lanes);
+    }
+
+    //Returns lanes if it is a lane count this format allows
+    static int requireLaneCount(int lanes) {
+        if (lanes < 1 || lanes > MAX_LANES) {
+            throw new IllegalArgumentException("Lane count must be in [1, " + MAX_LANES + "]: " + lanes);
+        }
+        return lanes;
+    }
+
+    public int getLanes() {
+        return lanes;
+    }
+
+    public byte[] encode(byte[] data, int offset, int length) {
+        AdaptiveCodeModel[] trees = new AdaptiveCodeModel[lanes];
+        BitWriter[] writers = new BitWriter[lanes];
+        for (int lane = 0; lane < lanes; lane++) {
+            trees[lane] = algorithm.newModel(EscapeCoder.forBytes());
+            writers[lane] = new BitWriter(length / lanes + 8);
+        }
+        for (int i = 0; i < length; i++) {
+            AdaptiveCodeModel tree = trees[i % lanes];
+            char symbol = (char) (data[offset + i] & 0xFF);
+            tree.encode(symbol, writers[i % lanes]);
+            tree.update(symbol);
+        }
+
+        byte[][] packed = new byte[lanes][];
+        int total = 4 * (lanes - 1);
+        for (int lane = 0; lane < lanes; lane++) {
+            packed[lane] = writers[lane].toByteArray();
+            total += packed[lane].length;
+        }
+        ByteBuffer out = ByteBuffer.allocate(total);
+        for (int lane = 0; lane < lanes - 1; lane++) {
+            out.putInt(packed[lane].length);
+        }
+        for (byte[] lane : packed) {
+            out.put(lane);
+        }
+        return out.array();
+    }
+
+    //Decodes a block of `length` bytes from the buffer's remaining bytes into dst
+    public void decode(ByteBuffer encoded, byte[] dst, int offset, int length) throws IOException {
+        ByteBuffer block = encoded.slice();
+        if (block.remaining() < 4 * (lanes - 1)) {
+            throw new EOFException("Truncated lane table");
+        }
+        AdaptiveCodeModel[] trees = new AdaptiveCodeModel[lanes];
+        BitReader[] readers = new BitReader[lanes];
+        int start = 4 * (lanes - 1);
+        for (int lane = 0; lane < lanes; lane++) {
+            int size = lane < lanes - 1 ? block.getInt(4 * lane) : block.limit() - start;
+            if (size < 0 || size > block.limit() - start) {
+                throw new IOException("Corrupt length for lane " + lane);
+            }
+            trees[lane] = algorithm.newModel(EscapeCoder.forBytes());
+            readers[lane] = new BitReader(block.duplicate().position(start).limit(start + size).slice(), size * 8L);
+            start += size;
+        }
+
+        // Whole rounds first: one symbol per lane, lanes independent of each other
+        int rounds = length / lanes;
+        int i = offset;
+        for (int round = 0; round < rounds; round++) {
+            for (int lane = 0; lane < lanes; lane++) {
+                dst[i++] = (byte) decodeSymbol(trees[lane], readers[lane]);
+            }
+        }
+        for (int lane = 0; i < offset + length; lane++) {
+            dst[i++] = (byte) decodeSymbol(trees[lane], readers[lane]);
+        }
+        // Past the last symbol a lane holds at most its padding
+        for (int lane = 0; lane < lanes; lane++) {
+            if (readers[lane].remainingBits() >= 8) {
+                throw new IOException((readers[lane].remainingBits() / 8) + " unused bytes in lane " + lane);
+            }
+        }
+    }
+
+    private static int decodeSymbol(AdaptiveCodeModel tree, BitReader in) throws IOException {
+        int symbol = tree.decodeSymbol(in);
+        if (symbol < 0) {
+            throw new EOFException("Lane ended inside a symbol");
+        }
+        if (symbol == EscapeCoder.END_OF_STREAM) {
+            throw new IOException("Unexpected END_OF_STREAM in a lane");
+        }
+        return symbol;
+    }
+}
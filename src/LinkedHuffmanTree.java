@@ -0,0 +1,472 @@
+package src;
+
+import java.util.Arrays;
+
+//Node-and-pointer adaptive Huffman tree shared by the FGK and Vitter engines: node numbering
+//and the symbol and number indexes, coding and decoding with their caches, priming, rescaling
+//and reset. The engines differ only in how an update restructures the tree, which each
+//implements in updateWeights.
+abstract class LinkedHuffmanTree implements AdaptiveCodeModel {
+    static final int MAX_NODE_NUMBER = 512;
+
+    private Node root;
+    private final Node nytNode;
+    private final Node[] symbolToNode; // leaf per symbol, null until seen
+    private Node[] nodesByNumber; // slot = MAX_NODE_NUMBER - node number, root first
+    private int nextNodeNumber;
+    private final EscapeCoder escapeCoder;
+    private final boolean vitterOrder;  // numbering of primed and rebuilt trees; see StaticTreeBuilder
+    private FrequencyProfile profile;   // what reset() primes from, null to start empty
+    private final SpareNodes spareNodes = new SpareNodes();
+    private DecodeTable decodeTable; // created by the first packed decode
+    private CodeCache codeCache;     // created by the first packed encode
+    private CodecListener listener = CodecListener.NONE;
+    private RescalePolicy rescalePolicy = RescalePolicy.DEFAULT;
+    private int symbolsSinceRescale;
+    private int[] windowBase; // window policy only: leaf weights right after the last rescale
+
+    LinkedHuffmanTree(EscapeCoder escapeCoder, boolean vitterOrder) {
+        this.escapeCoder = escapeCoder;
+        this.vitterOrder = vitterOrder;
+        nextNodeNumber = MAX_NODE_NUMBER; // Starting with a large number to decrement
+        nytNode = new Node('\0', 0, nextNodeNumber--);
+        nytNode.setNYT(true);
+        nytNode.setBlock(new WeightBlock(nytNode));
+        root = nytNode;
+        symbolToNode = new Node[escapeCoder.getAlphabetSize()];
+        nodesByNumber = new Node[2 * escapeCoder.getAlphabetSize() + 1];
+        placeNode(nytNode);
+    }
+
+    //Starts from the profile's static Huffman tree instead of an empty one; the other end of
+    //the stream has to be primed with the same profile
+    LinkedHuffmanTree(EscapeCoder escapeCoder, FrequencyProfile profile, boolean vitterOrder) {
+        this(escapeCoder, vitterOrder);
+        if (profile.getAlphabetSize() != escapeCoder.getAlphabetSize()) {
+            throw new IllegalArgumentException("Profile " + profile.getId() + " covers " + profile.getAlphabetSize()
+                    + " symbols, the tree " + escapeCoder.getAlphabetSize());
+        }
+        this.profile = profile;
+        prime();
+    }
+
+    private void prime() {
+        root = profile.buildTree(nytNode, spareNodes, MAX_NODE_NUMBER, vitterOrder);
+        registerPrimed(root);
+        nextNodeNumber = nytNode.getNodeNumber() - 1;
+    }
+
+    private void registerPrimed(Node node) {
+        placeNode(node);
+        if (!node.isLeaf()) {
+            registerPrimed(node.getLeftChild());
+            registerPrimed(node.getRightChild());
+        } else if (!node.isNYT()) {
+            symbolToNode[node.getSymbol()] = node;
+            escapeCoder.markSeen(node.getSymbol());
+        }
+    }
+
+    //If character was seen before, return its Huffman code (path in tree)
+    //Debug view of the packed encode below
+    public String encode(char symbol) {
+        BitWriter bits = new BitWriter(8);
+        encode(symbol, bits);
+        return bits.toString();
+    }
+
+    //Packed form of encode: writes the code bits straight into the bit writer
+    @Override
+    public void encode(char symbol, BitWriter out) {
+        if (codeCache == null) {
+            codeCache = new CodeCache(escapeCoder.getAlphabetSize()); // only encoding trees pay for it
+        }
+        Node node = getNodeForSymbol(symbol);
+        if (node != null) {
+            writeCode(node, out);
+        } else {
+            // Character not seen before: NYT path + escaped symbol
+            escapeCoder.checkSymbol(symbol);
+            writeCode(nytNode, out);
+            escapeCoder.write(symbol, out);
+            listener.escapeCoded(symbol);
+        }
+    }
+
+    private void writeCode(Node leaf, BitWriter out) {
+        if (!codeCache.write(leaf, out)) {
+            writePathToNode(leaf, out);
+        }
+    }
+
+    //Reads the symbol that follows a decoded NYT code, or -1 if the input ends first
+    @Override
+    public int decodeEscape(BitReader in) {
+        int symbol = escapeCoder.read(in);
+        if (symbol >= 0) {
+            listener.escapeCoded(symbol);
+        }
+        return symbol;
+    }
+
+    //Start from the node and move up to the root
+    private String getPathToNode(Node node) {
+        StringBuilder path = new StringBuilder();
+        Node current = node;
+
+        while (current != root) {
+            Node parent = current.getParent();
+            if (parent.getLeftChild() == current) {
+                path.append('0');
+            } else {
+                path.append('1');
+            }
+            current = parent;
+        }
+
+        return path.reverse().toString();
+    }
+
+    //Collects the path leaf-to-root in a long, then writes it root-first
+    private void writePathToNode(Node node, BitWriter out) {
+        long bits = 0;
+        int length = 0;
+        Node current = node;
+
+        while (current != root && length < 64) {
+            Node parent = current.getParent();
+            if (parent.getRightChild() == current) {
+                bits |= 1L << length;
+            }
+            length++;
+            current = parent;
+        }
+
+        if (current != root) {
+            writePathToNode(current, out); // deeper than 64 levels: emit the upper part first
+        } else if (codeCache != null && node.isLeaf()) {
+            codeCache.store(node, bits, length);
+        }
+        out.writeBits(bits, length);
+    }
+
+    //Update the tree structure
+    @Override
+    public void update(char symbol) {
+        if (listener.wantsUpdateStats()) {
+            measuredUpdate(symbol);
+        } else {
+            updateTree(symbol);
+        }
+    }
+
+    //update() for a metrics listener: code length and depth are read before the tree changes
+    private void measuredUpdate(char symbol) {
+        Node leaf = getNodeForSymbol(symbol);
+        int codeLength = depthOf(leaf != null ? leaf : nytNode);
+        int treeDepth = depthOf(nytNode); // weight 0, so no leaf sits deeper
+        if (listener.timeNextUpdate()) {
+            long start = System.nanoTime();
+            updateTree(symbol);
+            listener.symbolUpdated(codeLength, treeDepth, System.nanoTime() - start);
+        } else {
+            updateTree(symbol);
+            listener.symbolUpdated(codeLength, treeDepth, -1);
+        }
+    }
+
+    private int depthOf(Node node) {
+        int depth = 0;
+        for (Node current = node; current != root; current = current.getParent()) {
+            depth++;
+        }
+        return depth;
+    }
+
+    //The engine's update step, then a rescale if the policy calls for one
+    private void updateTree(char symbol) {
+        updateWeights(symbol);
+        // NYT is numbered two below the root for every seen symbol
+        int seenSymbols = (MAX_NODE_NUMBER - nytNode.getNodeNumber()) / 2;
+        if (rescalePolicy.isDue(root.getWeight(), seenSymbols, ++symbolsSinceRescale)) {
+            rescale();
+        }
+    }
+
+    //Counts one more occurrence of the symbol, adding its leaf first if it is new, and
+    //restores the engine's node order
+    abstract void updateWeights(char symbol);
+
+    //Splits NYT into an internal node with NYT on the left and the new symbol's leaf on the
+    //right, all three at weight 0, and returns the internal node. The internal node takes over
+    //NYT's number, the leaf and NYT get the next two; the engine assigns their blocks.
+    final Node splitNYT(char symbol) {
+        escapeCoder.checkSymbol(symbol);
+        escapeCoder.markSeen(symbol);
+
+        Node newInternal = spareNodes.take('\0', 0, nytNode.getNodeNumber());
+        Node newLeaf = spareNodes.take(symbol, 0, nextNodeNumber--);
+        nytNode.setNodeNumber(nextNodeNumber--);
+
+        newInternal.setLeftChild(nytNode);
+        newInternal.setRightChild(newLeaf);
+        Node nytParent = nytNode.getParent();
+        if (nytParent == null) {
+            root = newInternal; // NYT was the root
+        } else {
+            if (nytParent.getLeftChild() == nytNode) {
+                nytParent.setLeftChild(newInternal);
+            } else {
+                nytParent.setRightChild(newInternal);
+            }
+            newInternal.setParent(nytParent);
+        }
+        nytNode.setParent(newInternal);
+        newLeaf.setParent(newInternal);
+
+        symbolToNode[symbol] = newLeaf;
+        placeNode(newInternal);
+        placeNode(newLeaf);
+        placeNode(nytNode);
+        if (decodeTable != null) {
+            decodeTable.invalidate(newInternal); // NYT's old position now branches
+        }
+        if (codeCache != null) {
+            codeCache.invalidate(nytNode); // NYT moved one level down
+        }
+        return newInternal;
+    }
+
+    //Back to the state the tree was constructed in, empty or primed, keeping the listener and
+    //rescale policy. Nodes and tables are recycled, so the next stream allocates nothing
+    //until it grows past the previous one.
+    @Override
+    public void reset() {
+        spareNodes.collect(root, nytNode);
+        Arrays.fill(symbolToNode, null);
+        Arrays.fill(nodesByNumber, null);
+        escapeCoder.reset();
+
+        WeightBlock block = nytNode.getBlock();
+        nytNode.reuse('\0', 0, MAX_NODE_NUMBER);
+        nytNode.setNYT(true);
+        nytNode.setBlock(block);
+        block.setLeader(nytNode);
+        root = nytNode;
+        nextNodeNumber = MAX_NODE_NUMBER - 1;
+        placeNode(nytNode);
+        if (profile != null) {
+            prime();
+        }
+
+        symbolsSinceRescale = 0;
+        if (windowBase != null) {
+            Arrays.fill(windowBase, 0);
+        }
+        if (decodeTable != null) {
+            decodeTable.reset();
+        }
+        if (codeCache != null) {
+            codeCache.invalidateAll();
+        }
+    }
+
+    //Scales the leaf weights per the policy, then rebuilds the tree from them in one pass
+    //instead of replaying updates. Codes change everywhere, so both caches start over.
+    private void rescale() {
+        for (Node leaf : symbolToNode) {
+            if (leaf != null) {
+                leaf.setWeight(rescalePolicy.rescale(leaf.getSymbol(), leaf.getWeight(), windowBase));
+            }
+        }
+        root = StaticTreeBuilder.rebuild(root, nytNode, symbolToNode, spareNodes, MAX_NODE_NUMBER, vitterOrder);
+        placeSubtree(root);
+        symbolsSinceRescale = 0;
+        if (decodeTable != null) {
+            decodeTable.invalidateAll();
+        }
+        if (codeCache != null) {
+            codeCache.invalidateAll();
+        }
+        listener.treeRescaled();
+    }
+
+    private void placeSubtree(Node node) {
+        placeNode(node);
+        if (!node.isLeaf()) {
+            placeSubtree(node.getLeftChild());
+            placeSubtree(node.getRightChild());
+        }
+    }
+
+    final Node nodeAt(int nodeNumber) {
+        int slot = MAX_NODE_NUMBER - nodeNumber;
+        if (slot < 0 || slot >= nodesByNumber.length) {
+            return null;
+        }
+        return nodesByNumber[slot];
+    }
+
+    private void placeNode(Node node) {
+        int slot = MAX_NODE_NUMBER - node.getNodeNumber();
+        if (slot >= nodesByNumber.length) {
+            nodesByNumber = Arrays.copyOf(nodesByNumber, Math.max(slot + 1, nodesByNumber.length * 2));
+        }
+        nodesByNumber[slot] = node;
+    }
+
+    //Exchanges the tree positions and numbers of two nodes, neither an ancestor of the other.
+    //Block membership travels with the node; callers fix up leaders.
+    final void swapNodes(Node a, Node b) {
+        Node aParent = a.getParent();
+        Node bParent = b.getParent();
+
+        if (aParent == bParent) {
+            // Siblings just trade sides
+            Node left = aParent.getLeftChild();
+            aParent.setLeftChild(aParent.getRightChild());
+            aParent.setRightChild(left);
+        } else {
+            if (aParent.getLeftChild() == a) {
+                aParent.setLeftChild(b);
+            } else {
+                aParent.setRightChild(b);
+            }
+            if (bParent.getLeftChild() == b) {
+                bParent.setLeftChild(a);
+            } else {
+                bParent.setRightChild(a);
+            }
+            a.setParent(bParent);
+            b.setParent(aParent);
+        }
+
+        int tempNumber = a.getNodeNumber();
+        a.setNodeNumber(b.getNodeNumber());
+        b.setNodeNumber(tempNumber);
+        placeNode(a);
+        placeNode(b);
+
+        if (decodeTable != null) {
+            decodeTable.invalidate(a);
+            decodeTable.invalidate(b);
+        }
+        if (codeCache != null) {
+            codeCache.invalidateSubtree(a);
+            codeCache.invalidateSubtree(b);
+        }
+        listener.swapPerformed(a, b);
+    }
+
+    @Override
+    public Node decode(String bits, int[] position) {
+        Node current = root;//Start from root
+
+        while (!current.isLeaf() && position[0] < bits.length()) {
+            char bit = bits.charAt(position[0]++);
+            current = (bit == '0') ? current.getLeftChild() : current.getRightChild();
+        }
+
+        return current;//Stop at a leaf node
+    }
+
+    //Packed form of decode: follows bits from the reader until a leaf or the end of input.
+    //Up to DecodeTable.TABLE_BITS bits are resolved with one table lookup.
+    @Override
+    public Node decode(BitReader in) {
+        if (decodeTable == null) {
+            decodeTable = new DecodeTable(this); // only decoding trees pay for the table
+        }
+        Node current = root;
+        if (decodeTable.isEnabled()) {
+            Node reached = decodeTable.lookup(in);
+            if (reached != null) {
+                current = reached;
+            }
+        }
+
+        while (!current.isLeaf()) {
+            int bit = in.readBit();
+            if (bit < 0) {
+                break;
+            }
+            current = (bit == 0) ? current.getLeftChild() : current.getRightChild();
+        }
+
+        decodeTable.symbolDecoded();
+        return current;
+    }
+
+    @Override
+    public void setListener(CodecListener listener) {
+        this.listener = listener == null ? CodecListener.NONE : listener;
+    }
+
+    //Both ends of a stream must use the same policy, set before the first symbol
+    @Override
+    public void setRescalePolicy(RescalePolicy policy) {
+        rescalePolicy = policy;
+        windowBase = policy.isWindow() ? new int[escapeCoder.getAlphabetSize()] : null;
+    }
+
+    @Override
+    public EscapeCoder getEscapeCoder() {
+        return escapeCoder;
+    }
+
+    @Override
+    public Node getRoot() {
+        return root;
+    }
+
+    @Override
+    public Node getNYTNode() {
+        return nytNode;
+    }
+
+    @Override
+    public Node getNodeForSymbol(char symbol) {
+        return symbol < symbolToNode.length ? symbolToNode[symbol] : null;
+    }
+
+    //Tree Representation
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+
+        // First, add all leaf nodes (symbols)
+        for (Node node : symbolToNode) {
+            if (node == null) {
+                continue;
+            }
+            String code = getPathToNode(node);
+            result.append("symbol '").append(node.getSymbol())
+                  .append("' with code ").append(code)
+                  .append(" and count ").append(node.getWeight())
+                  .append("\n");
+        }
+
+        // Then, add NYT node
+        String nytCode = getPathToNode(nytNode);
+        result.append("NYT node with code ").append(nytCode)
+              .append(" and count ").append(nytNode.getWeight())
+              .append("\n");
+
+        // Now, print the entire tree (all nodes in a readable way)
+        printTree(root, result, "");
+
+        return result.toString();
+    }
+
+    private void printTree(Node node, StringBuilder result, String code) {
+        if (node.isNYT()) {
+            result.append("NYT: ").append(code).append(" (weight: ").append(node.getWeight()).append(")\n");
+        } else if (node.isLeaf()) {
+            result.append("'").append(node.getSymbol()).append("': ")
+                  .append(code).append(" (weight: ").append(node.getWeight()).append(")\n");
+        } else {
+            printTree(node.getLeftChild(), result, code + "0");
+            printTree(node.getRightChild(), result, code + "1");
+        }
+    }
+}
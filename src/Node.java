@@ -8,6 +8,7 @@ public class Node {
     private Node leftChild;
     private Node rightChild;
     private boolean isNYT;
+    private WeightBlock block;
 
     public Node(char symbol, int weight, int nodeNumber) {
         this.symbol = symbol;
@@ -39,6 +40,23 @@ public class Node {
         this.weight++;
     }
 
+    //Only for rebuilding a tree; the tree's ordering depends on weights
+    void setWeight(int weight) {
+        this.weight = weight;
+    }
+
+    //Clears a recycled node (see SpareNodes) back to a fresh, unlinked one
+    void reuse(char symbol, int weight, int nodeNumber) {
+        this.symbol = symbol;
+        this.weight = weight;
+        this.nodeNumber = nodeNumber;
+        this.parent = null;
+        this.leftChild = null;
+        this.rightChild = null;
+        this.isNYT = false;
+        this.block = null;
+    }
+
     public int getNodeNumber() {
         return nodeNumber;
     }
@@ -79,6 +97,14 @@ public class Node {
         this.isNYT = isNYT;
     }
 
+    WeightBlock getBlock() {
+        return block;
+    }
+
+    void setBlock(WeightBlock block) {
+        this.block = block;
+    }
+
     @Override
     public String toString() {
         if (isNYT) {
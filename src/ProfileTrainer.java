@@ -0,0 +1,59 @@
+package src;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+//Trains a FrequencyProfile from sample messages and reports what it saves on them.
+//Each file is one message; directories are searched recursively.
+//
+//  java -cp ... src.ProfileTrainer [--total=N] <id> <profile-file> <sample>...
+public class ProfileTrainer {
+
+    public static void main(String[] args) throws IOException {
+        int total = FrequencyProfile.DEFAULT_TOTAL;
+        int first = 0;
+        if (args.length > 0 && args[0].startsWith("--total=")) {
+            total = Integer.parseInt(args[0].substring("--total=".length()));
+            first = 1;
+        }
+        if (args.length - first < 3) {
+            System.err.println("Usage: ProfileTrainer [--total=N] <id> <profile-file> <sample>...");
+            System.exit(2);
+        }
+        int id = Integer.parseInt(args[first]);
+        Path output = Path.of(args[first + 1]);
+
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = first + 2; i < args.length; i++) {
+            try (Stream<Path> files = Files.walk(Path.of(args[i]))) {
+                for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile).sorted()::iterator) {
+                    samples.add(Files.readAllBytes(file));
+                }
+            }
+        }
+
+        FrequencyProfile profile = FrequencyProfile.train(id, samples, total);
+        try (OutputStream out = Files.newOutputStream(output)) {
+            profile.write(out);
+        }
+
+        long raw = 0;
+        long cold = 0;
+        long primed = 0;
+        for (byte[] sample : samples) {
+            raw += sample.length;
+            cold += new Encoder().encode(sample).length;
+            primed += new Encoder(AdaptiveCodeModel.Algorithm.FGK, profile).encode(sample).length;
+        }
+        System.out.println("Profile " + id + " written to " + output + " from " + samples.size() + " samples");
+        if (!samples.isEmpty()) {
+            System.out.printf("Average per message: %.1f bytes raw, %.1f bytes cold, %.1f bytes primed%n",
+                    (double) raw / samples.size(), (double) cold / samples.size(), (double) primed / samples.size());
+        }
+    }
+}
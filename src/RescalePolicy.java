@@ -0,0 +1,60 @@
+package src;
+
+//When and how an adaptive tree forgets old statistics. Rescaling happens inside update(), so
+//encoder and decoder rescale at the same symbol as long as both use the same policy. After a
+//rescale the tree is rebuilt as the static Huffman tree of the new weights.
+//Every seen symbol keeps a weight of at least 1: the escape coder cannot un-see a symbol.
+//So halving can't take the total below the number of seen symbols, and a threshold near that
+//would rebuild the tree on every update; the threshold in force is never below twice the
+//seen symbols, which leaves at least a quarter of the total to grow between rescales.
+public final class RescalePolicy {
+    //Only guards against int overflow; streams shorter than a billion symbols never rescale
+    public static final RescalePolicy DEFAULT = halveAt(1 << 30);
+
+    private final int threshold;  // halve mode: total weight that triggers a rescale
+    private final int windowHalf; // window mode: symbols between rescales, 0 in halve mode
+
+    private RescalePolicy(int threshold, int windowHalf) {
+        this.threshold = threshold;
+        this.windowHalf = windowHalf;
+    }
+
+    //Halves every weight (rounding up) once the total weight reaches maxTotal, or twice the
+    //number of seen symbols if that is more
+    public static RescalePolicy halveAt(int maxTotal) {
+        if (maxTotal < 2 || maxTotal > 1 << 30) {
+            throw new IllegalArgumentException("Threshold must be in [2, 2^30]: " + maxTotal);
+        }
+        return new RescalePolicy(maxTotal, 0);
+    }
+
+    //Weights count roughly the last `symbols` symbols: every symbols/2 symbols the tree keeps
+    //only what it saw in the half-window just finished, so it always covers between half and
+    //all of the window
+    public static RescalePolicy window(int symbols) {
+        if (symbols < 2 || symbols > 1 << 30) {
+            throw new IllegalArgumentException("Window must be in [2, 2^30]: " + symbols);
+        }
+        return new RescalePolicy(1 << 30, symbols / 2);
+    }
+
+    boolean isWindow() {
+        return windowHalf > 0;
+    }
+
+    boolean isDue(int totalWeight, int seenSymbols, int symbolsSinceRescale) {
+        return totalWeight >= Math.max(threshold, 2 * seenSymbols)
+                || (windowHalf > 0 && symbolsSinceRescale >= windowHalf);
+    }
+
+    //New weight of a leaf. In window mode base[symbol] holds the weight the leaf restarted
+    //from at the last rescale and is updated to the new one.
+    int rescale(int symbol, int weight, int[] base) {
+        if (windowHalf == 0) {
+            return (weight + 1) / 2;
+        }
+        int recent = Math.max(1, weight - base[symbol]);
+        base[symbol] = recent;
+        return recent;
+    }
+}
@@ -0,0 +1,158 @@
+package src;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+//Random access into an archive written by SeekableArchiveWriter. The file is memory-mapped and
+//read(offset, ...) decodes only the blocks overlapping the requested range, reading their
+//compressed bytes straight out of the mapping.
+public class SeekableArchiveReader implements Closeable {
+    private final FileChannel channel;
+    private final MappedByteBuffer mapped; // whole file, or null past 2 GB (blocks mapped one by one)
+    private final long[] rawOffsets;
+    private final long[] compressedOffsets;
+    private final int[] compressedLengths;
+    private final long rawLength;
+    private final int blockSize;
+
+    public SeekableArchiveReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long fileSize = channel.size();
+            if (fileSize < SeekableArchiveWriter.TRAILER_SIZE) {
+                throw new EOFException("File too short for an archive trailer");
+            }
+            mapped = fileSize <= Integer.MAX_VALUE ? channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize) : null;
+
+            ByteBuffer trailer = map(fileSize - SeekableArchiveWriter.TRAILER_SIZE, SeekableArchiveWriter.TRAILER_SIZE);
+            long indexOffset = trailer.getLong();
+            rawLength = trailer.getLong();
+            int blockCount = trailer.getInt();
+            blockSize = trailer.getInt();
+            if (trailer.getInt() != SeekableArchiveWriter.MAGIC) {
+                throw new IOException("Not a seekable archive: " + path);
+            }
+            long indexSize = (long) blockCount * SeekableArchiveWriter.INDEX_ENTRY_SIZE;
+            if (blockCount < 0 || blockSize <= 0 || indexOffset < 0
+                    || indexOffset + indexSize != fileSize - SeekableArchiveWriter.TRAILER_SIZE) {
+                throw new IOException("Corrupt archive trailer: " + path);
+            }
+
+            rawOffsets = new long[blockCount];
+            compressedOffsets = new long[blockCount];
+            compressedLengths = new int[blockCount];
+            ByteBuffer index = map(indexOffset, (int) indexSize);
+            for (int i = 0; i < blockCount; i++) {
+                rawOffsets[i] = index.getLong();
+                compressedOffsets[i] = index.getLong();
+                compressedLengths[i] = index.getInt();
+            }
+            // Walking back from the end checks every block is at most blockSize, the raw offsets
+            // never decrease and start at 0, and each block lies in the data before the index
+            long rawEnd = rawLength;
+            for (int i = blockCount - 1; i >= 0; i--) {
+                long rawSize = rawEnd - rawOffsets[i];
+                if (rawSize < 0 || rawSize > blockSize || compressedOffsets[i] < 0 || compressedLengths[i] < 0
+                        || compressedOffsets[i] > indexOffset - compressedLengths[i]) {
+                    throw new IOException("Corrupt archive index entry " + i + ": " + path);
+                }
+                rawEnd = rawOffsets[i];
+            }
+            if (rawEnd != 0) {
+                throw new IOException("Corrupt archive index: blocks don't cover the raw length: " + path);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private ByteBuffer map(long position, int size) throws IOException {
+        if (mapped != null) {
+            return mapped.slice((int) position, size);
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
+    //Total uncompressed length
+    public long size() {
+        return rawLength;
+    }
+
+    public int getBlockCount() {
+        return rawOffsets.length;
+    }
+
+    public byte[] read(long offset, int length) throws IOException {
+        byte[] result = new byte[length];
+        read(offset, result, 0, length);
+        return result;
+    }
+
+    //Fills dst[dstOffset, dstOffset + length) with the uncompressed bytes starting at offset
+    public void read(long offset, byte[] dst, int dstOffset, int length) throws IOException {
+        if (offset < 0 || length < 0 || offset + length > rawLength) {
+            throw new IndexOutOfBoundsException("Range " + offset + "+" + length + " outside archive of " + rawLength);
+        }
+        if (length == 0) {
+            return;
+        }
+
+        int block = findBlock(offset);
+        long position = offset;
+        int written = 0;
+        byte[] scratch = null;
+
+        while (written < length) {
+            long blockStart = rawOffsets[block];
+            int blockRawLength = blockRawLength(block);
+            int skip = (int) (position - blockStart);
+            int wanted = Math.min(length - written, blockRawLength - skip);
+            ByteBuffer compressed = map(compressedOffsets[block], compressedLengths[block]);
+
+            int decoded;
+            if (skip == 0) {
+                // Decoding stops as soon as the wanted prefix is out
+                decoded = new Decoder().decode(compressed, dst, dstOffset + written, wanted);
+            } else {
+                if (scratch == null) {
+                    scratch = new byte[blockSize];
+                }
+                decoded = new Decoder().decode(compressed, scratch, 0, skip + wanted) - skip;
+                if (decoded > 0) {
+                    System.arraycopy(scratch, skip, dst, dstOffset + written, decoded);
+                }
+            }
+            if (decoded != wanted) {
+                throw new IOException("Block " + block + " is shorter than its index entry");
+            }
+
+            written += wanted;
+            position += wanted;
+            block++;
+        }
+    }
+
+    private int blockRawLength(int block) {
+        long end = block + 1 < rawOffsets.length ? rawOffsets[block + 1] : rawLength;
+        return (int) (end - rawOffsets[block]);
+    }
+
+    //Last block whose raw offset is <= offset
+    private int findBlock(long offset) {
+        int found = Arrays.binarySearch(rawOffsets, offset);
+        return found >= 0 ? found : -found - 2;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
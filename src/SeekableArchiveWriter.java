@@ -0,0 +1,119 @@
+package src;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+//Writes a random-access archive: independently coded blocks followed by a block index, so
+//SeekableArchiveReader can decode any byte range without touching the blocks before it.
+//
+//Layout (big-endian):
+//  block 0 .. block n-1            Encoder.encode output, one fresh tree per block
+//  index, per block:               long rawOffset, long compressedOffset, int compressedLength
+//  trailer (TRAILER_SIZE bytes):   long indexOffset, long rawLength, int blockCount,
+//                                  int blockSize, int magic "AHX1"
+public class SeekableArchiveWriter extends OutputStream {
+    static final int MAGIC = 0x41485831; // "AHX1"
+    static final int INDEX_ENTRY_SIZE = 20;
+    static final int TRAILER_SIZE = 28;
+
+    private final DataOutputStream out;
+    private final byte[] block;
+    private int blockFill;
+    private long rawOffset;
+    private long compressedOffset;
+
+    private long[] rawOffsets = new long[16];
+    private long[] compressedOffsets = new long[16];
+    private int[] compressedLengths = new int[16];
+    private int blockCount;
+    private boolean closed;
+
+    public SeekableArchiveWriter(OutputStream out) {
+        this(out, BlockCompressor.DEFAULT_BLOCK_SIZE);
+    }
+
+    //Smaller blocks make random reads cheaper and compression slightly worse
+    public SeekableArchiveWriter(OutputStream out, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        this.out = new DataOutputStream(out);
+        this.block = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Archive already closed");
+        }
+        while (len > 0) {
+            int n = Math.min(len, block.length - blockFill);
+            System.arraycopy(b, off, block, blockFill, n);
+            blockFill += n;
+            off += n;
+            len -= n;
+            if (blockFill == block.length) {
+                writeBlock();
+            }
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (blockFill == 0) {
+            return;
+        }
+        byte[] compressed = new Encoder().encode(block, 0, blockFill);
+        out.write(compressed);
+
+        if (blockCount == rawOffsets.length) {
+            rawOffsets = Arrays.copyOf(rawOffsets, blockCount * 2);
+            compressedOffsets = Arrays.copyOf(compressedOffsets, blockCount * 2);
+            compressedLengths = Arrays.copyOf(compressedLengths, blockCount * 2);
+        }
+        rawOffsets[blockCount] = rawOffset;
+        compressedOffsets[blockCount] = compressedOffset;
+        compressedLengths[blockCount] = compressed.length;
+        blockCount++;
+
+        rawOffset += blockFill;
+        compressedOffset += compressed.length;
+        blockFill = 0;
+    }
+
+    //Only whole blocks are written before close(); the partial block is kept for compression
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeBlock();
+            long indexOffset = compressedOffset;
+            for (int i = 0; i < blockCount; i++) {
+                out.writeLong(rawOffsets[i]);
+                out.writeLong(compressedOffsets[i]);
+                out.writeInt(compressedLengths[i]);
+            }
+            out.writeLong(indexOffset);
+            out.writeLong(rawOffset);
+            out.writeInt(blockCount);
+            out.writeInt(block.length);
+            out.writeInt(MAGIC);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package src;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+//Keeps reset codec sessions (Encoder, Decoder, trees) for reuse, so a server coding many
+//small messages does not rebuild a tree and its tables for each one:
+//
+//  SessionPool<Encoder> encoders = new SessionPool<>(Encoder::new, Encoder::reset, 64);
+//  Encoder encoder = encoders.acquire();
+//  try { ... } finally { encoders.release(encoder); }
+//
+//A session is used by one thread at a time between acquire and release. The pool itself is
+//lock-free: each call starts probing the slots at a random offset, so threads mostly touch
+//different slots. When every slot is empty acquire builds a new session, and when every slot
+//is full release drops the session for the garbage collector.
+public class SessionPool<T> {
+    private final Supplier<T> factory;
+    private final Consumer<T> reset;
+    private final AtomicReferenceArray<T> slots;
+
+    //reset is applied on release and must bring a session back to its just-constructed state
+    public SessionPool(Supplier<T> factory, Consumer<T> reset, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.factory = factory;
+        this.reset = reset;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    public T acquire() {
+        int start = startSlot();
+        for (int i = 0; i < slots.length(); i++) {
+            int slot = (start + i) % slots.length();
+            T session = slots.get(slot);
+            if (session != null && slots.compareAndSet(slot, session, null)) {
+                return session;
+            }
+        }
+        return factory.get();
+    }
+
+    //Resets the session and keeps it if there is room; it must not be used afterwards
+    public void release(T session) {
+        reset.accept(session);
+        int start = startSlot();
+        for (int i = 0; i < slots.length(); i++) {
+            int slot = (start + i) % slots.length();
+            if (slots.get(slot) == null && slots.compareAndSet(slot, null, session)) {
+                return;
+            }
+        }
+    }
+
+    //Number of idle sessions, for monitoring; may be stale by the time it returns
+    public int idleCount() {
+        int idle = 0;
+        for (int slot = 0; slot < slots.length(); slot++) {
+            if (slots.get(slot) != null) {
+                idle++;
+            }
+        }
+        return idle;
+    }
+
+    //Random rather than per thread: virtual threads come and go too fast for a thread's own
+    //offset to spread them
+    private int startSlot() {
+        return ThreadLocalRandom.current().nextInt(slots.length());
+    }
+}
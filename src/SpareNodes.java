@@ -0,0 +1,48 @@
+package src;
+
+import java.util.Arrays;
+
+//Nodes of a discarded tree kept for reuse, so rebuilding or resetting a tree does not hand
+//them all to the garbage collector and allocate them again
+class SpareNodes {
+    private Node[] nodes = new Node[16];
+    private int count;
+
+    //Takes every node of the subtree except `keep` (NYT, which the tree holds on to)
+    void collect(Node node, Node keep) {
+        if (!node.isLeaf()) {
+            collect(node.getLeftChild(), keep);
+            collect(node.getRightChild(), keep);
+        }
+        if (node != keep) {
+            add(node);
+        }
+    }
+
+    //Takes only the internal nodes of the subtree
+    void collectInternal(Node node) {
+        if (!node.isLeaf()) {
+            collectInternal(node.getLeftChild());
+            collectInternal(node.getRightChild());
+            add(node);
+        }
+    }
+
+    private void add(Node node) {
+        if (count == nodes.length) {
+            nodes = Arrays.copyOf(nodes, count * 2);
+        }
+        nodes[count++] = node;
+    }
+
+    //A spare node reset to the given values, or a new one once the spares run out
+    Node take(char symbol, int weight, int nodeNumber) {
+        if (count == 0) {
+            return new Node(symbol, weight, nodeNumber);
+        }
+        Node node = nodes[--count];
+        nodes[count] = null;
+        node.reuse(symbol, weight, nodeNumber);
+        return node;
+    }
+}
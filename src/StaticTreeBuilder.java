@@ -0,0 +1,89 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+//Builds a static Huffman tree over leaves with known weights, numbered and blocked the way the
+//adaptive engines expect, so they can continue updating it. Used to prime a tree from a
+//FrequencyProfile and to rebuild one after its weights are rescaled.
+class StaticTreeBuilder {
+
+    private StaticTreeBuilder() {
+    }
+
+    //leaves: NYT (weight 0) first, then the symbols sorted by weight with a deterministic
+    //tie order. Internal nodes come from spare. Nodes are numbered down from rootNumber in
+    //the order they were merged; returns the root.
+    //
+    //The vitter flag picks the engine's order. Vitter: leaves win ties, and blocks split by
+    //leaf/internal. FGK: merged nodes win ties, which keeps NYT's parent numbered right above
+    //NYT's sibling, as in a tree grown by updates; FGK's update relies on that.
+    static Node build(List<Node> leaves, SpareNodes spare, int rootNumber, boolean vitter) {
+        // Two-queue Huffman: merged nodes come out in weight order, so no heap is needed
+        List<Node> merged = new ArrayList<>(leaves.size());
+        List<Node> order = new ArrayList<>(2 * leaves.size()); // nodes in the order they were taken
+        int nextLeaf = 0;
+        int nextMerged = 0;
+        while (leaves.size() - nextLeaf + merged.size() - nextMerged > 1) {
+            Node first = null;
+            for (int i = 0; i < 2; i++) {
+                boolean takeLeaf = nextMerged == merged.size() || (nextLeaf < leaves.size()
+                        && (vitter ? leaves.get(nextLeaf).getWeight() <= merged.get(nextMerged).getWeight()
+                                   : leaves.get(nextLeaf).getWeight() < merged.get(nextMerged).getWeight()));
+                Node taken = takeLeaf ? leaves.get(nextLeaf++) : merged.get(nextMerged++);
+                order.add(taken);
+                if (i == 0) {
+                    first = taken;
+                } else {
+                    merged.add(join(first, taken, spare));
+                }
+            }
+        }
+        Node root = merged.isEmpty() ? leaves.get(0) : merged.get(merged.size() - 1);
+        root.setParent(null);
+        order.add(root);
+
+        // Later merges get higher numbers; siblings were taken together, so they are adjacent
+        int number = rootNumber - order.size() + 1;
+        Node previous = null;
+        for (Node node : order) {
+            node.setNodeNumber(number++);
+            boolean sameBlock = previous != null && previous.getWeight() == node.getWeight()
+                    && (!vitter || previous.isLeaf() == node.isLeaf());
+            if (sameBlock) {
+                node.setBlock(previous.getBlock());
+                node.getBlock().setLeader(node);
+            } else {
+                node.setBlock(new WeightBlock(node));
+            }
+            previous = node;
+        }
+        return root;
+    }
+
+    //Rebuilds a tree whose leaf weights were changed in place, recycling all of its nodes.
+    //Leaves are ordered by weight, then symbol, so both ends of a stream agree.
+    static Node rebuild(Node root, Node nytNode, Node[] symbolToNode, SpareNodes spare,
+                        int rootNumber, boolean vitter) {
+        spare.collectInternal(root);
+        List<Node> leaves = new ArrayList<>();
+        leaves.add(nytNode);
+        for (Node leaf : symbolToNode) {
+            if (leaf != null) {
+                leaves.add(leaf);
+            }
+        }
+        leaves.subList(1, leaves.size()).sort(Comparator.comparingInt(Node::getWeight).thenComparingInt(Node::getSymbol));
+        return build(leaves, spare, rootNumber, vitter);
+    }
+
+    private static Node join(Node left, Node right, SpareNodes spare) {
+        Node parent = spare.take('\0', left.getWeight() + right.getWeight(), 0);
+        parent.setLeftChild(left);
+        parent.setRightChild(right);
+        left.setParent(parent);
+        right.setParent(parent);
+        return parent;
+    }
+}
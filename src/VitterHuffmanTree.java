@@ -0,0 +1,104 @@
+package src;
+
+//Vitter's algorithm Lambda ("Design and Analysis of Dynamic Huffman Codes", JACM 1987).
+//Nodes are numbered in weight order as in FGK, but within one weight every leaf is numbered
+//below every internal node, and a block is the run of nodes sharing both weight and kind.
+//Keeping that order makes the tree the one with the smallest total and maximum code length
+//among all Huffman trees for the counts so far: Vitter bounds its output by the static
+//two-pass Huffman size plus one bit per symbol, where FGK's bound is twice that size.
+//A slide past a block is done as one swap per position passed, and swapPerformed fires for each.
+public class VitterHuffmanTree extends LinkedHuffmanTree {
+
+    public VitterHuffmanTree() {
+        this(EscapeCoder.literal8());
+    }
+
+    public VitterHuffmanTree(EscapeCoder escapeCoder) {
+        super(escapeCoder, true);
+    }
+
+    //Starts from the profile's static Huffman tree instead of an empty one; the other end of
+    //the stream has to be primed with the same profile
+    public VitterHuffmanTree(EscapeCoder escapeCoder, FrequencyProfile profile) {
+        super(escapeCoder, profile, true);
+    }
+
+    //Vitter's Update: bring the leaf to the top of its block, then slide and increment every
+    //node up to the root. NYT's parent and sibling share a weight, so when the updated leaf
+    //is that sibling (or was just created there) it is incremented last, after its parent.
+    @Override
+    void updateWeights(char symbol) {
+        Node current = getNodeForSymbol(symbol);
+        Node leafToIncrement = null;
+
+        if (current == null) {
+            current = addNewSymbol(symbol);
+            leafToIncrement = current.getRightChild();
+        } else {
+            Node leader = current.getBlock().getLeader();
+            if (leader != current) {
+                swapNodes(current, leader);
+                current.getBlock().setLeader(current);
+            }
+            if (current.getParent() == getNYTNode().getParent()) {
+                leafToIncrement = current;
+                current = current.getParent();
+            }
+        }
+
+        while (current != null) {
+            current = slideAndIncrement(current);
+        }
+        if (leafToIncrement != null) {
+            slideAndIncrement(leafToIncrement);
+        }
+    }
+
+    //Leaves sort below internal nodes of the same weight: NYT, then the leaf, then the parent.
+    //Returns the internal node.
+    private Node addNewSymbol(char symbol) {
+        Node newInternal = splitNYT(symbol);
+        WeightBlock block = getNYTNode().getBlock();
+        newInternal.setBlock(new WeightBlock(newInternal));
+        newInternal.getRightChild().setBlock(block);
+        block.setLeader(newInternal.getRightChild());
+        return newInternal;
+    }
+
+    //Increments a block leader. A leaf of weight w that is followed by internal nodes of
+    //weight w, or an internal node of weight w followed by leaves of weight w + 1, would break
+    //the order once incremented, so it first slides above that whole block. Returns the next
+    //node to update: a leaf's new parent, or an internal node's former parent.
+    private Node slideAndIncrement(Node node) {
+        int weight = node.getWeight();
+        boolean leaf = node.isLeaf();
+        Node formerParent = node.getParent();
+
+        WeightBlock block = node.getBlock();
+        Node below = nodeAt(node.getNodeNumber() - 1);
+        boolean blockEmptied = below == null || below.getBlock() != block;
+        if (!blockEmptied) {
+            block.setLeader(below);
+        }
+
+        Node next = nodeAt(node.getNodeNumber() + 1);
+        if (next != null && next.isLeaf() != leaf && next.getWeight() == (leaf ? weight : weight + 1)) {
+            // Rotate: node takes the top number of the next block, which shifts down by one.
+            // That block's leader keeps leading it from one number lower.
+            int top = next.getBlock().getLeader().getNodeNumber();
+            while (node.getNodeNumber() < top) {
+                swapNodes(node, nodeAt(node.getNodeNumber() + 1));
+            }
+        }
+
+        Node above = nodeAt(node.getNodeNumber() + 1);
+        node.incrementWeight();
+        if (above != null && above.getWeight() == weight + 1 && above.isLeaf() == leaf) {
+            node.setBlock(above.getBlock()); // joins below the existing leader
+        } else if (!blockEmptied) {
+            node.setBlock(new WeightBlock(node));
+        } // else: the emptied block is reused, still led by this node
+
+        return leaf ? node.getParent() : formerParent;
+    }
+}
@@ -0,0 +1,18 @@
+package src;
+
+//A run of consecutively numbered nodes sharing one weight; the leader is the highest-numbered
+class WeightBlock {
+    private Node leader;
+
+    WeightBlock(Node leader) {
+        this.leader = leader;
+    }
+
+    Node getLeader() {
+        return leader;
+    }
+
+    void setLeader(Node leader) {
+        this.leader = leader;
+    }
+}
@@ -1,10 +1,81 @@
 package test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.Pipe;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+import src.AdaptiveCodeModel;
+import src.AdaptiveHuffmanInputStream;
+import src.AdaptiveHuffmanOutputStream;
+import src.BitReader;
+import src.BlockCompressor;
+import src.BitWriter;
+import src.CodecListener;
+import src.CodecMetrics;
+import src.CodecStatus;
+import src.CompressionPipeline;
+import src.CorruptStreamException;
 import src.Encoder;
+import src.EscapeCoder;
+import src.FramedInputStream;
+import src.FramedOutputStream;
+import src.FrequencyProfile;
 import src.Decoder;
+import src.HuffmanCli;
+import src.HuffmanTree;
+import src.LaneCodec;
+import src.RescalePolicy;
+import src.SeekableArchiveReader;
+import src.SeekableArchiveWriter;
+import src.SessionPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+//main() prints the String API demo; `mvn test` runs the @Test methods, one per feature
 public class AdaptiveHuffmanTest {
-    public static void main(String[] args) {
+    private static final List<String> MESSAGES = List.of(
+            "hello", "adaptive huffman coding", "AAAAABBBBCCCDDE", "abcde", "mississippi", "");
+
+    // Every byte value, twice, in a scattered order
+    private static final byte[] RAW = new byte[512];
+    static {
+        for (int i = 0; i < RAW.length; i++) {
+            RAW[i] = (byte) (i * 7);
+        }
+    }
+
+    private static final List<byte[]> SAMPLES = List.of(
+            "{\"op\":\"get\",\"key\":\"user:17\"}".getBytes(StandardCharsets.US_ASCII),
+            "{\"op\":\"put\",\"key\":\"user:42\",\"value\":\"ok\"}".getBytes(StandardCharsets.US_ASCII));
+    private static final byte[] MESSAGE = "{\"op\":\"get\",\"key\":\"user:99\"}".getBytes(StandardCharsets.US_ASCII);
+
+    public static void main(String[] args) throws IOException {
         System.out.println("=========== Adaptive Huffman Coding Test Suite ===========\n");
         
         // Test cases
@@ -18,7 +89,7 @@ public class AdaptiveHuffmanTest {
         System.out.println("============= All tests completed =============");
     }
     
-    private static void runTest(String message) {
+    private static void runTest(String message) throws IOException {
         System.out.println("Test case: \"" + message + "\"");
         
         // Encode
@@ -48,4 +119,632 @@ public class AdaptiveHuffmanTest {
         System.out.println("Result  : " + (message.equals(decoded) ? "PASS" : "FAIL"));
         System.out.println("--------------------------------------------------\n");
     }
+
+    private static byte[] bytesOf(String message) {
+        return message.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    public void stringApiRoundTrips() throws IOException {
+        for (String message : MESSAGES) {
+            assertEquals(message, new Decoder().decode(new Encoder().encode(message)));
+        }
+    }
+
+    @Test
+    public void packedRoundTrips() throws IOException {
+        for (String message : MESSAGES) {
+            byte[] raw = bytesOf(message);
+            assertArrayEquals(raw, new Decoder().decode(new Encoder().encode(raw)), message);
+        }
+        assertArrayEquals(RAW, new Decoder().decode(new Encoder().encode(RAW)));
+    }
+
+    // Chars beyond the 8-bit literal range must be rejected, not silently widened
+    @Test
+    public void wideCharsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new HuffmanTree().encode('\u0100'));
+    }
+
+    // The array-backed reference tree must emit exactly the same bits as HuffmanTree
+    @Test
+    public void arrayEngineMatchesNodeEngine() {
+        for (String message : MESSAGES) {
+            byte[] raw = bytesOf(message);
+            HuffmanTree nodeTree = new HuffmanTree();
+            ArrayHuffmanTree arrayTree = new ArrayHuffmanTree();
+            BitWriter nodeBits = new BitWriter();
+            BitWriter arrayBits = new BitWriter();
+            for (byte b : raw) {
+                nodeTree.encode((char) (b & 0xFF), nodeBits);
+                nodeTree.update((char) (b & 0xFF));
+                arrayTree.encode(b & 0xFF, arrayBits);
+                arrayTree.update(b & 0xFF);
+            }
+            assertArrayEquals(nodeBits.toByteArray(), arrayBits.toByteArray(), message);
+
+            BitReader arrayIn = new BitReader(arrayBits.toByteArray(), arrayBits.bitLength());
+            ArrayHuffmanTree arrayDecoder = new ArrayHuffmanTree();
+            byte[] arrayDecoded = new byte[raw.length];
+            for (int i = 0; i < raw.length; i++) {
+                int symbol = arrayDecoder.decode(arrayIn);
+                arrayDecoded[i] = (byte) symbol;
+                arrayDecoder.update(symbol);
+            }
+            assertArrayEquals(raw, arrayDecoded, message);
+        }
+    }
+
+    // Vitter's engine through both APIs
+    @Test
+    public void vitterRoundTrips() throws IOException {
+        for (String message : MESSAGES) {
+            Encoder vitterEncoder = new Encoder(AdaptiveCodeModel.Algorithm.VITTER);
+            String vitterBits = vitterEncoder.encode(message);
+            byte[] vitterPacked = vitterEncoder.encode(bytesOf(message));
+            Decoder vitterDecoder = new Decoder(AdaptiveCodeModel.Algorithm.VITTER);
+            assertEquals(message, vitterDecoder.decode(vitterBits));
+            assertArrayEquals(bytesOf(message), vitterDecoder.decode(vitterPacked), message);
+        }
+    }
+
+    // Order-1 contexts, with a cap small enough to force evictions
+    @Test
+    public void order1RoundTrips() throws IOException {
+        for (String message : MESSAGES) {
+            for (int maxContexts : new int[] {2, 256}) {
+                Encoder contextEncoder = new Encoder();
+                contextEncoder.setOrder1(maxContexts);
+                Decoder contextDecoder = new Decoder();
+                contextDecoder.setOrder1(maxContexts);
+                byte[] raw = bytesOf(message);
+                assertArrayEquals(raw, contextDecoder.decode(contextEncoder.encode(raw)), message);
+            }
+        }
+    }
+
+    // Streaming wrappers produce and accept the same bytes as the one-shot API
+    @Test
+    public void streamsMatchOneShot() throws IOException {
+        for (String message : MESSAGES) {
+            byte[] raw = bytesOf(message);
+            ByteArrayOutputStream sink = new ByteArrayOutputStream();
+            try (AdaptiveHuffmanOutputStream out = new AdaptiveHuffmanOutputStream(sink)) {
+                out.write(raw);
+            }
+            assertArrayEquals(new Encoder().encode(raw), sink.toByteArray(), message);
+            try (AdaptiveHuffmanInputStream in = new AdaptiveHuffmanInputStream(new ByteArrayInputStream(sink.toByteArray()))) {
+                assertArrayEquals(raw, in.readAllBytes(), message);
+            }
+        }
+    }
+
+    // Block mode with tiny blocks so every message spans several of them
+    @Test
+    public void blocksRoundTrip() throws IOException {
+        BlockCompressor blocks = new BlockCompressor(4, ForkJoinPool.commonPool());
+        for (String message : MESSAGES) {
+            byte[] raw = bytesOf(message);
+            byte[] container = blocks.compress(raw);
+            ByteArrayOutputStream blockSink = new ByteArrayOutputStream();
+            blocks.compress(new ByteArrayInputStream(raw), blockSink);
+            assertArrayEquals(container, blockSink.toByteArray(), message);
+            assertArrayEquals(raw, blocks.decompress(container), message);
+        }
+    }
+
+    // Multi-lane blocks, alone and in a lane container, including more lanes than bytes
+    @Test
+    public void lanesRoundTrip() throws IOException {
+        BlockCompressor blocks = new BlockCompressor(4, ForkJoinPool.commonPool());
+        BlockCompressor laneBlocks = new BlockCompressor(8, ForkJoinPool.commonPool(), LaneCodec.DEFAULT_LANES);
+        for (String message : MESSAGES) {
+            byte[] raw = bytesOf(message);
+            for (AdaptiveCodeModel.Algorithm algorithm : AdaptiveCodeModel.Algorithm.values()) {
+                for (int lanes = 1; lanes <= 5; lanes++) {
+                    LaneCodec lane = new LaneCodec(algorithm, lanes);
+                    byte[] laneDecoded = new byte[raw.length];
+                    lane.decode(ByteBuffer.wrap(lane.encode(raw, 0, raw.length)), laneDecoded, 0, raw.length);
+                    assertArrayEquals(raw, laneDecoded, message + ", " + lanes + " lanes");
+                }
+            }
+            ByteArrayOutputStream laneSink = new ByteArrayOutputStream();
+            laneBlocks.compress(new ByteArrayInputStream(raw), laneSink);
+            ByteArrayOutputStream laneRestored = new ByteArrayOutputStream();
+            laneBlocks.decompress(new ByteArrayInputStream(laneSink.toByteArray()), laneRestored);
+            assertArrayEquals(raw, laneRestored.toByteArray(), message);
+            assertArrayEquals(raw, blocks.decompress(laneBlocks.compress(raw)), message);
+        }
+    }
+
+    // A lane with whole bytes left after its last symbol is corrupt, and lane counts are checked
+    @Test
+    public void lanesRejectLeftoverBytes() {
+        LaneCodec lane = new LaneCodec(AdaptiveCodeModel.Algorithm.FGK, 3);
+        byte[] encoded = lane.encode(RAW, 0, RAW.length);
+        byte[] padded = Arrays.copyOf(encoded, encoded.length + 1); // one more byte in the last lane
+        assertThrows(IOException.class, () -> lane.decode(ByteBuffer.wrap(padded), new byte[RAW.length], 0, RAW.length));
+        assertThrows(IllegalArgumentException.class, () -> new LaneCodec(AdaptiveCodeModel.Algorithm.FGK, 0));
+        assertThrows(IllegalArgumentException.class, () -> new BlockCompressor(8, ForkJoinPool.commonPool(), 65));
+    }
+
+    // Seekable archive: every sub-range read back through the memory-mapped reader
+    @Test
+    public void archiveReadsEveryRange() throws IOException {
+        for (String message : MESSAGES) {
+            byte[] raw = bytesOf(message);
+            Path archive = Files.createTempFile("adaptive-huffman", ".ahx");
+            try {
+                try (SeekableArchiveWriter writer = new SeekableArchiveWriter(Files.newOutputStream(archive), 4)) {
+                    writer.write(raw);
+                }
+                try (SeekableArchiveReader reader = new SeekableArchiveReader(archive)) {
+                    for (int from = 0; from <= raw.length; from++) {
+                        for (int to = from; to <= raw.length; to++) {
+                            assertArrayEquals(Arrays.copyOfRange(raw, from, to), reader.read(from, to - from),
+                                    message + " [" + from + ", " + to + ")");
+                        }
+                    }
+                }
+            } finally {
+                Files.delete(archive);
+            }
+        }
+    }
+
+    // A damaged archive index is rejected when the reader opens, not mid-read
+    @Test
+    public void corruptArchiveIndexRejected() throws IOException {
+        Path archive = Files.createTempFile("adaptive-huffman", ".ahx");
+        try {
+            try (SeekableArchiveWriter writer = new SeekableArchiveWriter(Files.newOutputStream(archive), 64)) {
+                writer.write(RAW); // 8 blocks
+            }
+            byte[] intact = Files.readAllBytes(archive);
+            int index = intact.length - 28 - 8 * 20; // 20-byte entries before the 28-byte trailer
+            int entry3 = index + 3 * 20;
+            int entry1 = index + 20;
+            int entry7 = index + 7 * 20;
+            List<byte[]> corrupted = new ArrayList<>();
+            ByteBuffer oversized = ByteBuffer.wrap(intact.clone()); // block 2 one byte past blockSize
+            oversized.putLong(entry3, oversized.getLong(entry3) + 1);
+            corrupted.add(oversized.array());
+            ByteBuffer decreasing = ByteBuffer.wrap(intact.clone()); // block 1 starts after block 2
+            decreasing.putLong(entry1, 200);
+            corrupted.add(decreasing.array());
+            ByteBuffer overrun = ByteBuffer.wrap(intact.clone()); // block 7 runs into the index
+            overrun.putInt(entry7 + 16, overrun.getInt(entry7 + 16) + 1);
+            corrupted.add(overrun.array());
+            ByteBuffer unanchored = ByteBuffer.wrap(intact.clone()); // block 0 doesn't start at 0
+            unanchored.putLong(index, 1);
+            corrupted.add(unanchored.array());
+
+            for (byte[] bytes : corrupted) {
+                Files.write(archive, bytes);
+                assertThrows(IOException.class, () -> new SeekableArchiveReader(archive).close());
+            }
+            Files.write(archive, intact);
+            try (SeekableArchiveReader reader = new SeekableArchiveReader(archive)) {
+                assertArrayEquals(RAW, reader.read(0, RAW.length));
+            }
+        } finally {
+            Files.delete(archive);
+        }
+    }
+
+    // Rescaling policies rebuild the tree mid-stream; both ends must stay in step
+    @Test
+    public void rescaledStreamsRoundTrip() throws IOException {
+        for (RescalePolicy policy : new RescalePolicy[] {RescalePolicy.halveAt(16), RescalePolicy.window(8)}) {
+            for (AdaptiveCodeModel.Algorithm algorithm : AdaptiveCodeModel.Algorithm.values()) {
+                Encoder rescaling = new Encoder(algorithm);
+                rescaling.setRescalePolicy(policy);
+                Decoder rescaled = new Decoder(algorithm);
+                rescaled.setRescalePolicy(policy);
+                assertArrayEquals(RAW, rescaled.decode(rescaling.encode(RAW)), algorithm.toString());
+            }
+        }
+    }
+
+    // A threshold below the live alphabet must not rebuild the tree on every symbol
+    @Test
+    public void lowThresholdDoesNotRescaleEveryUpdate() {
+        int[] rescales = new int[1];
+        HuffmanTree lowThreshold = new HuffmanTree(EscapeCoder.forBytes());
+        lowThreshold.setRescalePolicy(RescalePolicy.halveAt(2));
+        lowThreshold.setListener(new CodecListener() {
+            @Override
+            public void treeRescaled() {
+                rescales[0]++;
+            }
+        });
+        for (int round = 0; round < 64; round++) {
+            for (byte b : RAW) {
+                lowThreshold.update((char) (b & 0xFF));
+            }
+        }
+        assertTrue(rescales[0] > 0 && rescales[0] < RAW.length, rescales[0] + " rescales"); // under one per 64 symbols
+    }
+
+    // Primed from a trained profile: short messages shrink, and a wrong profile is refused
+    @Test
+    public void primedStreamsAreSmaller() throws IOException {
+        ByteArrayOutputStream profileFile = new ByteArrayOutputStream();
+        FrequencyProfile.train(300, SAMPLES, FrequencyProfile.DEFAULT_TOTAL).write(profileFile);
+        FrequencyProfile profile = FrequencyProfile.read(new ByteArrayInputStream(profileFile.toByteArray()));
+        for (AdaptiveCodeModel.Algorithm algorithm : AdaptiveCodeModel.Algorithm.values()) {
+            byte[] primed = new Encoder(algorithm, profile).encode(MESSAGE);
+            assertEquals(300, Decoder.profileIdOf(primed));
+            assertTrue(primed.length < new Encoder(algorithm).encode(MESSAGE).length, algorithm.toString());
+            assertArrayEquals(MESSAGE, new Decoder(algorithm, profile).decode(primed));
+        }
+        byte[] named300 = new Encoder(AdaptiveCodeModel.Algorithm.FGK, profile).encode(MESSAGE);
+        Decoder wrongProfile = new Decoder(AdaptiveCodeModel.Algorithm.FGK,
+                new FrequencyProfile(301, new int[EscapeCoder.BYTE_ALPHABET_SIZE]));
+        assertThrows(IllegalArgumentException.class, () -> wrongProfile.decode(named300));
+    }
+
+    // Reset sessions from a pool code a stream exactly like fresh ones, primed or not
+    @Test
+    public void resetSessionsMatchFreshOnes() throws IOException {
+        FrequencyProfile resetProfile = FrequencyProfile.train(302, SAMPLES, FrequencyProfile.DEFAULT_TOTAL);
+        for (AdaptiveCodeModel.Algorithm algorithm : AdaptiveCodeModel.Algorithm.values()) {
+            for (FrequencyProfile profile : Arrays.asList(null, resetProfile)) {
+                for (int maxContexts : new int[] {0, 2}) {
+                    SessionPool<Encoder> encoders = new SessionPool<>(() -> {
+                        Encoder encoder = new Encoder(algorithm, profile);
+                        encoder.setOrder1(maxContexts);
+                        return encoder;
+                    }, Encoder::reset, 1);
+                    SessionPool<Decoder> decoders = new SessionPool<>(() -> {
+                        Decoder decoder = new Decoder(algorithm, profile);
+                        decoder.setOrder1(maxContexts);
+                        return decoder;
+                    }, Decoder::reset, 1);
+                    Encoder fresh = encoders.acquire();
+                    byte[] expected = fresh.encode(MESSAGE);
+                    String expectedBits = fresh.encode("mississippi");
+                    encoders.release(fresh);
+                    for (byte[] first : List.of(SAMPLES.get(1), RAW)) {
+                        Encoder encoder = encoders.acquire();
+                        Decoder decoder = decoders.acquire();
+                        decoder.decode(encoder.encode(first));
+                        decoder.decode(encoder.encode("abracadabra"));
+                        encoders.release(encoder);
+                        decoders.release(decoder);
+                        encoder = encoders.acquire();
+                        decoder = decoders.acquire();
+                        assertSame(fresh, encoder);
+                        assertEquals(0, encoders.idleCount());
+                        assertArrayEquals(expected, encoder.encode(MESSAGE));
+                        assertArrayEquals(MESSAGE, decoder.decode(expected));
+                        assertEquals(expectedBits, encoder.encode("mississippi"));
+                        assertEquals("mississippi", decoder.decode(expectedBits));
+                        encoders.release(encoder);
+                        decoders.release(decoder);
+                    }
+                }
+            }
+        }
+    }
+
+    // Metrics shared by both ends, every update timed, and readable over JMX
+    @Test
+    public void metricsCountBothEnds() throws IOException, JMException {
+        CodecMetrics metrics = new CodecMetrics(1);
+        Encoder metered = new Encoder(AdaptiveCodeModel.Algorithm.VITTER);
+        metered.setListener(metrics);
+        Decoder meteredDecoder = new Decoder(AdaptiveCodeModel.Algorithm.VITTER);
+        meteredDecoder.setListener(metrics);
+        byte[] meteredPacked = metered.encode(RAW);
+        assertArrayEquals(RAW, meteredDecoder.decode(meteredPacked));
+
+        CodecMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(RAW.length + 1, snapshot.getSymbolsEncoded());
+        assertEquals(RAW.length + 1, snapshot.getSymbolsDecoded());
+        assertEquals(2 * EscapeCoder.BYTE_ALPHABET_SIZE, snapshot.getEscapes());
+        assertTrue(snapshot.getSwaps() > 0);
+        assertEquals(2 * (RAW.length + 1), snapshot.getUpdates());
+        assertEquals(snapshot.getUpdates(), Arrays.stream(snapshot.getUpdateLatencyHistogram()).sum());
+        assertEquals(meteredPacked.length, (long) Math.ceil(snapshot.getBitsPerSymbol() * (RAW.length + 1) / 8));
+        assertTrue(snapshot.getMaxCodeLength() <= snapshot.getMaxTreeDepth());
+        assertTrue(snapshot.getAverageCodeLength() > 0);
+
+        ObjectName name = metrics.register("test");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            assertEquals((long) RAW.length + 1, server.getAttribute(name, "SymbolsEncoded"));
+            server.invoke(name, "reset", null, null);
+            assertEquals(0, metrics.snapshot().getSwaps());
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+
+    // The file CLI over channels: several buffers' worth of input, same bytes as one-shot
+    @Test
+    public void cliMatchesOneShot() throws IOException {
+        byte[] large = new byte[200_000];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) ("adaptive huffman ".charAt(i % 17) + (i * 31 >>> 12) % 3);
+        }
+        Path plain = Files.createTempFile("adaptive-huffman", ".txt");
+        Path packedFile = Files.createTempFile("adaptive-huffman", ".ahz");
+        Path unpackedFile = Files.createTempFile("adaptive-huffman", ".out");
+        try {
+            Files.write(plain, large);
+            for (AdaptiveCodeModel.Algorithm algorithm : AdaptiveCodeModel.Algorithm.values()) {
+                for (int maxContexts : new int[] {0, 16}) {
+                    HuffmanCli cli = new HuffmanCli(algorithm, maxContexts, null);
+                    for (int run = 0; run < 2; run++) { // the second run reuses the reset sessions
+                        try (FileChannel in = FileChannel.open(plain);
+                             FileChannel out = FileChannel.open(packedFile, StandardOpenOption.WRITE,
+                                     StandardOpenOption.TRUNCATE_EXISTING)) {
+                            assertEquals(large.length, cli.compress(in, out).bytesIn);
+                        }
+                        try (FileChannel in = FileChannel.open(packedFile);
+                             FileChannel out = FileChannel.open(unpackedFile, StandardOpenOption.WRITE,
+                                     StandardOpenOption.TRUNCATE_EXISTING)) {
+                            assertEquals(large.length, cli.decompress(in, out).bytesOut);
+                        }
+                        Encoder reference = new Encoder(algorithm);
+                        reference.setOrder1(maxContexts);
+                        assertArrayEquals(reference.encode(large), Files.readAllBytes(packedFile));
+                        assertArrayEquals(large, Files.readAllBytes(unpackedFile));
+                    }
+                }
+            }
+        } finally {
+            Files.delete(plain);
+            Files.delete(packedFile);
+            Files.delete(unpackedFile);
+        }
+    }
+
+    // A failed CLI run resets its sessions, so the next file on the same instance codes cleanly
+    @Test
+    public void cliResetsAfterFailure() throws IOException {
+        for (AdaptiveCodeModel.Algorithm algorithm : AdaptiveCodeModel.Algorithm.values()) {
+            HuffmanCli cli = new HuffmanCli(algorithm, 0, null);
+            byte[] packed = new Encoder(algorithm).encode(RAW);
+            byte[] truncated = Arrays.copyOf(packed, packed.length / 2);
+            assertThrows(IOException.class, () -> cli.decompress(
+                    Channels.newChannel(new ByteArrayInputStream(truncated)),
+                    Channels.newChannel(new ByteArrayOutputStream())));
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            cli.compress(Channels.newChannel(new ByteArrayInputStream(RAW)), Channels.newChannel(compressed));
+            assertArrayEquals(packed, compressed.toByteArray());
+            ByteArrayOutputStream restored = new ByteArrayOutputStream();
+            cli.decompress(Channels.newChannel(new ByteArrayInputStream(packed)), Channels.newChannel(restored));
+            assertArrayEquals(RAW, restored.toByteArray());
+        }
+    }
+
+    // Buffer-to-buffer API fed one input byte at a time into 3-byte output windows
+    @Test
+    public void buffersMatchOneShot() {
+        for (AdaptiveCodeModel.Algorithm algorithm : AdaptiveCodeModel.Algorithm.values()) {
+            byte[] reference = new Encoder(algorithm).encode(RAW);
+            Encoder chunkedEncoder = new Encoder(algorithm);
+            ByteBuffer compressed = ByteBuffer.allocate(reference.length + 16);
+            CodecStatus status;
+            int next = 0;
+            do {
+                ByteBuffer src = ByteBuffer.wrap(RAW, next, Math.min(1, RAW.length - next));
+                next += src.remaining();
+                if (next == RAW.length) {
+                    chunkedEncoder.finish();
+                }
+                do {
+                    ByteBuffer window = compressed.slice();
+                    window.limit(Math.min(3, window.limit()));
+                    status = chunkedEncoder.encode(src, window);
+                    compressed.position(compressed.position() + window.position());
+                } while (status == CodecStatus.NEEDS_OUTPUT);
+            } while (status != CodecStatus.FINISHED);
+            compressed.flip();
+            assertEquals(ByteBuffer.wrap(reference), compressed);
+
+            Decoder chunkedDecoder = new Decoder(algorithm);
+            ByteBuffer restored = ByteBuffer.allocate(RAW.length);
+            int limit = compressed.position();
+            do {
+                compressed.limit(Math.min(limit + 1, compressed.capacity()));
+                limit = compressed.limit();
+                ByteBuffer window = restored.slice();
+                window.limit(Math.min(3, window.limit()));
+                status = chunkedDecoder.decode(compressed, window);
+                restored.position(restored.position() + window.position());
+            } while (status != CodecStatus.FINISHED);
+            assertArrayEquals(RAW, restored.array());
+        }
+    }
+
+    // Block modes: this input is incompressible, a run suits a static code, short text
+    // suits a fresh tree; all three in one container, plus an old adaptive-only container
+    @Test
+    public void blockModesFitTheirData() throws IOException {
+        byte[] run = new byte[1 << 16];
+        Arrays.fill(run, (byte) 'x');
+        byte[] text = "adaptive huffman codes learn the source as they go, one symbol at a time; a static code needs a table first"
+                .repeat(2).getBytes(StandardCharsets.US_ASCII);
+        assertEquals(BlockCompressor.Mode.STORED, BlockCompressor.chooseMode(RAW, 0, RAW.length, 1));
+        assertEquals(BlockCompressor.Mode.STATIC, BlockCompressor.chooseMode(run, 0, run.length, 1));
+        assertEquals(BlockCompressor.Mode.ADAPTIVE, BlockCompressor.chooseMode(text, 0, text.length, 1));
+
+        ByteBuffer mixed = ByteBuffer.allocate(RAW.length + run.length + text.length).put(RAW).put(run).put(text);
+        BlockCompressor modeBlocks = new BlockCompressor(text.length, ForkJoinPool.commonPool());
+        byte[] modeContainer = modeBlocks.compress(mixed.array());
+        assertTrue(modeContainer.length < mixed.capacity());
+        assertArrayEquals(mixed.array(), modeBlocks.decompress(modeContainer));
+
+        byte[] adaptiveBlock = new Encoder().encode(RAW);
+        ByteBuffer legacy = ByteBuffer.allocate(20 + adaptiveBlock.length)
+                .putInt(0x41484231).putInt(RAW.length) // "AHB1", block size
+                .putInt(RAW.length).putInt(adaptiveBlock.length).put(adaptiveBlock).putInt(0);
+        assertArrayEquals(RAW, modeBlocks.decompress(legacy.array()));
+    }
+
+    // Pipeline with 5-byte blocks in 2-deep rings, reused for a second job, then cut short
+    @Test
+    public void pipelineMatchesOneShot() throws IOException {
+        for (AdaptiveCodeModel.Algorithm algorithm : AdaptiveCodeModel.Algorithm.values()) {
+            CompressionPipeline pipeline = new CompressionPipeline(algorithm, 0, null, 5, 2);
+            byte[] reference = new Encoder(algorithm).encode(RAW);
+            for (int job = 0; job < 2; job++) {
+                ByteArrayOutputStream piped = new ByteArrayOutputStream();
+                pipeline.compress(Channels.newChannel(new ByteArrayInputStream(RAW)), Channels.newChannel(piped));
+                assertArrayEquals(reference, piped.toByteArray());
+                ByteArrayOutputStream unpiped = new ByteArrayOutputStream();
+                pipeline.decompress(Channels.newChannel(new ByteArrayInputStream(piped.toByteArray())),
+                        Channels.newChannel(unpiped));
+                assertArrayEquals(RAW, unpiped.toByteArray());
+            }
+            // truncated input must not decode quietly
+            assertThrows(EOFException.class, () -> pipeline.decompress(
+                    Channels.newChannel(new ByteArrayInputStream(reference, 0, reference.length / 2)),
+                    Channels.newChannel(new ByteArrayOutputStream())));
+        }
+    }
+
+    // Decompressing from a pipe the other end keeps open must return at END_OF_STREAM, and
+    // the pipeline must still run the next job while that reader waits
+    @Test
+    public void pipelineReturnsWhileTheSourceStaysOpen() throws IOException {
+        CompressionPipeline pipeline = new CompressionPipeline(AdaptiveCodeModel.Algorithm.FGK, 0, null, 5, 2);
+        byte[] packed = new Encoder().encode(RAW);
+        Pipe pipe = Pipe.open();
+        try (Pipe.SinkChannel sink = pipe.sink(); Pipe.SourceChannel source = pipe.source()) {
+            ByteBuffer sent = ByteBuffer.wrap(packed);
+            while (sent.hasRemaining()) {
+                sink.write(sent);
+            }
+            ByteArrayOutputStream unpiped = new ByteArrayOutputStream();
+            assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> pipeline.decompress(source, Channels.newChannel(unpiped)));
+            assertArrayEquals(RAW, unpiped.toByteArray());
+
+            ByteArrayOutputStream next = new ByteArrayOutputStream();
+            pipeline.decompress(Channels.newChannel(new ByteArrayInputStream(packed)), Channels.newChannel(next));
+            assertArrayEquals(RAW, next.toByteArray());
+        }
+    }
+
+    // Framed stream: round trip, then a damaged second frame must stop the reader right
+    // after the first one
+    @Test
+    public void framedStreamsStopAtTheDamagedFrame() throws IOException {
+        ByteArrayOutputStream framedSink = new ByteArrayOutputStream();
+        try (FramedOutputStream framed = new FramedOutputStream(framedSink, 100, AdaptiveCodeModel.Algorithm.FGK)) {
+            framed.write(RAW, 0, 150);
+            framed.flush();
+            framed.write(RAW, 150, RAW.length - 150);
+        }
+        byte[] frames = framedSink.toByteArray();
+        assertArrayEquals(RAW, new FramedInputStream(new ByteArrayInputStream(frames)).readAllBytes());
+
+        int secondFrame = 8 + 12 + ByteBuffer.wrap(frames, 12, 4).getInt(); // after the header and frame 0
+        frames[secondFrame + 12] ^= 0x10;
+        FramedInputStream damaged = new FramedInputStream(new ByteArrayInputStream(frames));
+        assertArrayEquals(Arrays.copyOf(RAW, 100), damaged.readNBytes(100));
+        CorruptStreamException e = assertThrows(CorruptStreamException.class, damaged::read);
+        assertEquals(1, e.getFrameIndex());
+        assertEquals(secondFrame, e.getStreamOffset());
+        assertEquals(100, e.getDataOffset());
+    }
+
+    // Frames are coded by an Encoder, so a primed order-1 stream with a rescale policy frames too
+    @Test
+    public void framedStreamsKeepCodecSettings() throws IOException {
+        FrequencyProfile profile = FrequencyProfile.train(303, SAMPLES, FrequencyProfile.DEFAULT_TOTAL);
+        for (AdaptiveCodeModel.Algorithm algorithm : AdaptiveCodeModel.Algorithm.values()) {
+            Encoder encoder = new Encoder(algorithm, profile);
+            encoder.setOrder1(4);
+            encoder.setRescalePolicy(RescalePolicy.halveAt(64));
+            ByteArrayOutputStream framedSink = new ByteArrayOutputStream();
+            try (FramedOutputStream framed = new FramedOutputStream(framedSink, 100, encoder)) {
+                framed.write(RAW);
+            }
+            Decoder decoder = new Decoder(algorithm, profile);
+            decoder.setOrder1(4);
+            decoder.setRescalePolicy(RescalePolicy.halveAt(64));
+            assertArrayEquals(RAW, new FramedInputStream(new ByteArrayInputStream(framedSink.toByteArray()), decoder)
+                    .readAllBytes(), algorithm.toString());
+        }
+    }
+
+    // Input cut short must not decode, through either one-shot API
+    @Test
+    public void truncatedStreamsAreRejected() {
+        byte[] packed = new Encoder().encode(RAW);
+        assertThrows(CorruptStreamException.class, () -> new Decoder().decode(Arrays.copyOf(packed, packed.length - 1)));
+        String bits = new Encoder().encode("mississippi");
+        assertThrows(CorruptStreamException.class, () -> new Decoder().decode(bits.substring(0, bits.length() - 1)));
+    }
+
+    // Sync flush: each message decodes from its own bytes alone, and later ones cost less as
+    // the shared tree learns
+    @Test
+    public void syncFlushedMessagesDecodeAlone() throws IOException {
+        Encoder messageEncoder = new Encoder();
+        messageEncoder.setSyncFlush(true);
+        Decoder messageDecoder = new Decoder();
+        messageDecoder.setSyncFlush(true);
+        byte[] tick = "{\"event\":\"tick\",\"symbol\":\"ACME\",\"price\":101.25}".getBytes(StandardCharsets.US_ASCII);
+        int firstSize = 0;
+        int lastSize = 0;
+        for (int i = 0; i < 20; i++) {
+            byte[] sent = messageEncoder.encodeMessage(tick, 0, tick.length);
+            assertArrayEquals(tick, messageDecoder.decodeMessage(sent), "message " + i);
+            firstSize = i == 0 ? sent.length : firstSize;
+            lastSize = sent.length;
+        }
+        assertTrue(lastSize < firstSize / 2, firstSize + " -> " + lastSize + " bytes");
+    }
+
+    // The buffer API stops at every sync point, fed one byte at a time as from a slow
+    // connection
+    @Test
+    public void syncFlushStopsTheBufferApi() throws IOException {
+        Encoder flushEncoder = new Encoder();
+        flushEncoder.setSyncFlush(true);
+        ByteBuffer stream = ByteBuffer.allocate(4 * RAW.length + 64);
+        flushEncoder.flush();
+        assertEquals(CodecStatus.FLUSHED, flushEncoder.encode(ByteBuffer.wrap(RAW), stream));
+        int firstMessageEnd = stream.position();
+        flushEncoder.flush();
+        assertEquals(CodecStatus.FLUSHED, flushEncoder.encode(ByteBuffer.wrap(RAW), stream));
+        flushEncoder.finish();
+        assertEquals(CodecStatus.FINISHED, flushEncoder.encode(ByteBuffer.allocate(0), stream));
+        stream.flip();
+
+        Decoder flushDecoder = new Decoder();
+        flushDecoder.setSyncFlush(true);
+        ByteBuffer restoredMessages = ByteBuffer.allocate(2 * RAW.length);
+        List<Integer> syncPositions = new ArrayList<>();
+        int streamLength = stream.limit();
+        int fed = 0;
+        CodecStatus status;
+        do {
+            stream.limit(++fed);
+            status = flushDecoder.decode(stream, restoredMessages);
+            if (status == CodecStatus.FLUSHED) {
+                syncPositions.add(stream.position());
+                assertEquals(syncPositions.size() * RAW.length, restoredMessages.position());
+            }
+        } while (status != CodecStatus.FINISHED && fed < streamLength);
+        assertEquals(CodecStatus.FINISHED, status);
+        assertEquals(2, syncPositions.size());
+        assertEquals(firstMessageEnd, syncPositions.get(0));
+
+        byte[] twice = new byte[2 * RAW.length];
+        System.arraycopy(RAW, 0, twice, 0, RAW.length);
+        System.arraycopy(RAW, 0, twice, RAW.length, RAW.length);
+        assertArrayEquals(twice, restoredMessages.array());
+
+        Decoder wholeDecoder = new Decoder();
+        wholeDecoder.setSyncFlush(true);
+        assertArrayEquals(twice, wholeDecoder.decode(Arrays.copyOf(stream.array(), streamLength)));
+    }
 }
\ No newline at end of file
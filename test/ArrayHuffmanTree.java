@@ -0,0 +1,275 @@
+package test;
+
+import java.util.Arrays;
+
+import src.BitReader;
+import src.BitWriter;
+import src.EscapeCoder;
+
+//Array-backed twin of HuffmanTree, kept with the tests as an independent check of its FGK
+//update. A node is a slot in parallel int arrays and its FGK number is implied by the slot
+//(slot 0 = root = highest number), so swapping two nodes exchanges the contents of their
+//slots. The codecs can't use it: AdaptiveCodeModel hands out Nodes, and it has no reset,
+//rescale or profile priming.
+public class ArrayHuffmanTree {
+    public static final int END_OF_INPUT = -1;
+
+    private static final int NONE = -1;
+    private static final int ROOT = 0;
+
+    private final EscapeCoder escapeCoder;
+    private final int[] weight;
+    private final int[] parent;
+    private final int[] left;    // NONE for leaves; right is always set alongside
+    private final int[] right;
+    private final int[] symbol;  // leaf symbol, NONE for internal nodes and NYT
+    private final int[] symbolToIndex;
+
+    // Weight blocks: blockOf[slot] is a block id, blockLeader[id] its lowest slot
+    private final int[] blockOf;
+    private final int[] blockLeader;
+    private final int[] freeBlocks;
+    private int freeBlockCount;
+
+    private final int[] pathScratch;
+    private int nodeCount;
+    private int nytIndex;
+
+    public ArrayHuffmanTree() {
+        this(EscapeCoder.literal8());
+    }
+
+    public ArrayHuffmanTree(EscapeCoder escapeCoder) {
+        this.escapeCoder = escapeCoder;
+        int alphabetSize = escapeCoder.getAlphabetSize();
+        int maxNodes = 2 * alphabetSize + 1;
+        weight = new int[maxNodes];
+        parent = new int[maxNodes];
+        left = new int[maxNodes];
+        right = new int[maxNodes];
+        symbol = new int[maxNodes];
+        symbolToIndex = new int[alphabetSize];
+        blockOf = new int[maxNodes];
+        blockLeader = new int[maxNodes];
+        freeBlocks = new int[maxNodes];
+        pathScratch = new int[maxNodes];
+
+        Arrays.fill(symbolToIndex, NONE);
+        for (int i = maxNodes - 1; i >= 0; i--) {
+            freeBlocks[freeBlockCount++] = i;
+        }
+
+        // Start with NYT as the root
+        nodeCount = 1;
+        nytIndex = ROOT;
+        parent[ROOT] = NONE;
+        left[ROOT] = NONE;
+        right[ROOT] = NONE;
+        symbol[ROOT] = NONE;
+        int block = freeBlocks[--freeBlockCount];
+        blockOf[ROOT] = block;
+        blockLeader[block] = ROOT;
+    }
+
+    public boolean contains(int sym) {
+        return symbolToIndex[sym] != NONE;
+    }
+
+    //Writes the symbol's code, or the NYT code plus the escaped symbol for a new one
+    public void encode(int sym, BitWriter out) {
+        escapeCoder.checkSymbol(sym);
+        int index = symbolToIndex[sym];
+        if (index != NONE) {
+            writePath(index, out);
+        } else {
+            writePath(nytIndex, out);
+            escapeCoder.write(sym, out);
+        }
+    }
+
+    private void writePath(int index, BitWriter out) {
+        long bits = 0;
+        int length = 0;
+        int current = index;
+
+        while (current != ROOT && length < 64) {
+            if (right[parent[current]] == current) {
+                bits |= 1L << length;
+            }
+            length++;
+            current = parent[current];
+        }
+
+        if (current != ROOT) {
+            // Deeper than 64 levels: emit the upper part of the path first
+            int depth = 0;
+            while (current != ROOT) {
+                pathScratch[depth++] = current;
+                current = parent[current];
+            }
+            while (depth > 0) {
+                int node = pathScratch[--depth];
+                out.writeBit(right[parent[node]] == node ? 1 : 0);
+            }
+        }
+        out.writeBits(bits, length);
+    }
+
+    //Reads one symbol (resolving NYT escapes), or END_OF_INPUT if the bits run out
+    public int decode(BitReader in) {
+        int current = ROOT;
+
+        while (left[current] != NONE) {
+            int bit = in.readBit();
+            if (bit < 0) {
+                return END_OF_INPUT;
+            }
+            current = (bit == 0) ? left[current] : right[current];
+        }
+
+        if (current == nytIndex) {
+            int escaped = escapeCoder.read(in);
+            return escaped < 0 ? END_OF_INPUT : escaped;
+        }
+        return symbol[current];
+    }
+
+    public void update(int sym) {
+        escapeCoder.checkSymbol(sym);
+        int index = symbolToIndex[sym];
+        if (index == NONE) {
+            escapeCoder.markSeen(sym);
+            index = addNewSymbol(sym);
+        }
+        updateFromIndex(index);
+    }
+
+    //Splits NYT into an internal node with NYT (left) and the new leaf (right) below it
+    private int addNewSymbol(int sym) {
+        int internal = nytIndex;
+        int leaf = nodeCount;
+        int nyt = nodeCount + 1;
+        nodeCount += 2;
+
+        left[internal] = nyt;
+        right[internal] = leaf;
+        symbol[internal] = NONE;
+
+        parent[leaf] = internal;
+        left[leaf] = NONE;
+        right[leaf] = NONE;
+        weight[leaf] = 0;
+        symbol[leaf] = sym;
+        symbolToIndex[sym] = leaf;
+
+        parent[nyt] = internal;
+        left[nyt] = NONE;
+        right[nyt] = NONE;
+        weight[nyt] = 0;
+        symbol[nyt] = NONE;
+        nytIndex = nyt;
+
+        // All three share the weight-0 block, led by the internal node
+        int block = blockOf[internal];
+        blockOf[leaf] = block;
+        blockOf[nyt] = block;
+        blockLeader[block] = internal;
+        return leaf;
+    }
+
+    private void updateFromIndex(int index) {
+        int current = index;
+
+        while (current != NONE) {
+            if (current == ROOT) {
+                incrementWeight(current);
+                return;
+            }
+
+            int par = parent[current];
+            int leader = blockLeader[blockOf[current]];
+
+            if (leader == par) {
+                // Sibling of NYT: take the slot just below the parent and bump the pair
+                int below = par + 1;
+                if (below != current && swapSlots(current, below)) {
+                    current = below;
+                }
+                incrementWeight(par);
+                incrementWeight(current);
+                current = parent[par];
+            } else {
+                if (leader != current && swapSlots(current, leader)) {
+                    current = leader;
+                }
+                incrementWeight(current);
+                current = parent[current];
+            }
+        }
+    }
+
+    //Increments a block leader and moves it into the block one weight up
+    private void incrementWeight(int index) {
+        int block = blockOf[index];
+        int below = index + 1;
+        int above = index - 1;
+        boolean blockEmptied = below >= nodeCount || blockOf[below] != block;
+
+        if (!blockEmptied) {
+            blockLeader[block] = below;
+        }
+
+        if (above >= 0 && weight[above] == weight[index] + 1) {
+            blockOf[index] = blockOf[above];
+            if (blockEmptied) {
+                freeBlocks[freeBlockCount++] = block;
+            }
+        } else if (!blockEmptied) {
+            int newBlock = freeBlocks[--freeBlockCount];
+            blockLeader[newBlock] = index;
+            blockOf[index] = newBlock;
+        } // else: the emptied block is reused for the new weight
+
+        weight[index]++;
+    }
+
+    //Exchanges the subtrees hanging at two slots of equal weight; parents stay with the slots
+    private boolean swapSlots(int a, int b) {
+        if (parent[a] == b || parent[b] == a) {
+            return false;
+        }
+
+        int tmp = left[a];
+        left[a] = left[b];
+        left[b] = tmp;
+        tmp = right[a];
+        right[a] = right[b];
+        right[b] = tmp;
+        tmp = symbol[a];
+        symbol[a] = symbol[b];
+        symbol[b] = tmp;
+
+        reattach(a);
+        reattach(b);
+        return true;
+    }
+
+    private void reattach(int index) {
+        if (left[index] != NONE) {
+            parent[left[index]] = index;
+            parent[right[index]] = index;
+        } else if (symbol[index] != NONE) {
+            symbolToIndex[symbol[index]] = index;
+        } else {
+            nytIndex = index;
+        }
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getWeight(int index) {
+        return weight[index];
+    }
+}
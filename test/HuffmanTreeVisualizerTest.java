@@ -0,0 +1,35 @@
+package test;
+
+import java.lang.reflect.InvocationTargetException;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.jupiter.api.Test;
+
+import src.AdaptiveCodeModel;
+import src.EscapeCoder;
+import Visualization.HuffmanTreeVisualizer;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//Built and run by the Visualization module, which has Swing and the visualizer on its path
+public class HuffmanTreeVisualizerTest {
+
+    // Once all 257 byte symbols are in, the tree has 515 nodes and NYT's number is negative;
+    // the snapshot taken by updateTree must still cover every node
+    @Test
+    public void snapshotsAFullByteAlphabetTree() throws InterruptedException, InvocationTargetException {
+        for (AdaptiveCodeModel.Algorithm algorithm : AdaptiveCodeModel.Algorithm.values()) {
+            AdaptiveCodeModel tree = algorithm.newModel(EscapeCoder.forBytes());
+            for (int symbol = 0; symbol <= EscapeCoder.END_OF_STREAM; symbol++) {
+                tree.update((char) symbol);
+            }
+            assertTrue(tree.getNYTNode().getNodeNumber() < 0);
+            SwingUtilities.invokeAndWait(() -> {
+                HuffmanTreeVisualizer visualizer = new HuffmanTreeVisualizer(tree);
+                tree.update('a');
+                visualizer.updateTree(tree);
+            });
+        }
+    }
+}